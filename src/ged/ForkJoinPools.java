@@ -0,0 +1,29 @@
+package ged;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Fork-join pools shared by all parallel computations, one per parallelism.
+ * The worker threads are daemons, so the pools are never shut down.
+ */
+public class ForkJoinPools
+{
+  private static final ConcurrentHashMap<Integer, ForkJoinPool> pools = new ConcurrentHashMap<Integer, ForkJoinPool>();
+
+  private ForkJoinPools()
+  {
+  }
+
+  /**
+   * @param parallelism
+   *          number of worker threads
+   * @return the shared pool with the given parallelism
+   */
+  public static ForkJoinPool get(int parallelism)
+  {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("The parallelism must be positive!");
+    return pools.computeIfAbsent(parallelism, ForkJoinPool::new);
+  }
+}
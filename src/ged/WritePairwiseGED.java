@@ -5,10 +5,15 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
 
 import org.jgrapht.graph.AbstractGraph;
 
 import ged.alg.distance.GraphDistance;
+import ged.alg.distance.SDTEDbasedDistance;
+import ged.alg.graphencoder.tree.NeighborhoodTreeIndex;
+import ged.alg.graphencoder.tree.NeighborhoodTreeIndex.Trees;
 import ged.structures.graph.Edge;
 import ged.structures.graph.Vertex;
 
@@ -39,6 +44,56 @@ public class WritePairwiseGED {
 		
 		return geds;
 	}
+	/**
+	 * Computes the pairwise distances from the precomputed neighborhood trees, so the trees of every graph
+	 * are built only once, see {@link SDTEDbasedDistance#computeGraphDistance(Trees, Trees)}.
+	 */
+	public static <V extends Vertex, E extends Edge> double[][] computePairwiseGED(NeighborhoodTreeIndex<V, E> index, SDTEDbasedDistance distance)
+	{
+		double[][] geds = new double [index.size()][index.size()];
+		for(int i =0; i< index.size(); i++)
+		{
+			for(int j = 0; j< index.size(); j++)
+			{
+				geds[i][j] = distance.computeGraphDistance(index.get(i), index.get(j));
+			}
+		}
+		return geds;
+	}
+	/**
+	 * Computes the pairwise distances with several threads, every row of the matrix is one task.
+	 * The distance has to be thread-safe, e.g. an SDTEDbasedDistance may only use a shared cache
+	 * that supports concurrent access (ConcurrentSDTEDCostCache).
+	 * @param parallelism number of worker threads
+	 */
+	public static <V extends Vertex, E extends Edge> double[][] computePairwiseGED(ArrayList<AbstractGraph<V, E>> ds, GraphDistance distance, int parallelism)
+	{
+		double[][] geds = new double [ds.size()][ds.size()];
+		try
+		{
+			ForkJoinPools.get(parallelism).submit(() -> IntStream.range(0, ds.size()).parallel().forEach(i -> {
+				for(int j = 0; j< ds.size(); j++)
+				{
+					geds[i][j] = distance.computeGraphDistance(ds.get(i), ds.get(j));
+				}
+			})).get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while computing the pairwise GED", e);
+		}
+		catch (ExecutionException e)
+		{
+			throw new IllegalStateException("Computing the pairwise GED failed", e.getCause());
+		}
+		return geds;
+	}
+	public static <V extends Vertex, E extends Edge> void writePairwiseGED(ArrayList<AbstractGraph<V, E>> ds, GraphDistance distance, String path, String datasetname, int parallelism) throws IOException
+	{
+		double[][] geds = computePairwiseGED(ds,distance, parallelism);
+		writeToFile(geds, path, datasetname,distance.getID());
+	}
 	private static void writeToFile(double[][] geds, String path, String datasetname,String distID) throws IOException
 	{
 		BufferedWriter writer = new BufferedWriter(new FileWriter(path+"/"+datasetname+"_"+distID+"_GEDs.txt"));
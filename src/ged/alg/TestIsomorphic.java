@@ -1,9 +1,17 @@
 package ged.alg;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.jgrapht.alg.isomorphism.VF2GraphIsomorphismInspector;
 import org.jgrapht.graph.AbstractGraph;
 
 import ged.alg.distance.comparison.ExactGraphEditDistance;
+import ged.alg.graphencoder.ColorRefinement;
+import ged.alg.graphencoder.WLColorDictionary;
 import ged.alg.graphencoder.WeisfeilerLehman;
 import ged.alg.graphencoder.WeisfeilerLehmanCompressed;
 import ged.alg.graphencoder.WeisfeilerLehmanCompressedLookAhead;
@@ -13,6 +21,7 @@ import ged.alg.graphencoder.tree.NeighborhoodTreeV1Plus;
 import ged.alg.graphencoder.tree.NeighborhoodTreeV2;
 import ged.alg.graphencoder.tree.NeighborhoodTreeWLLookAhead;
 import ged.structures.graph.Edge;
+import ged.structures.graph.IndexedGraph;
 import ged.structures.graph.Vertex;
 
 public class TestIsomorphic
@@ -28,16 +37,16 @@ public class TestIsomorphic
   {
     NeighborhoodTreeV1<V, E> nt1 = new NeighborhoodTreeV1<V, E>(g1, true);
     NeighborhoodTreeV1<V, E> nt2 = new NeighborhoodTreeV1<V, E>(g2, true);
-    return nt1.computeLexicographicEncoding()
-        .equals(nt2.computeLexicographicEncoding());
+    return Arrays.equals(nt1.computeCanonicalEncoding(),
+        nt2.computeCanonicalEncoding());
   }
   public static <V, E extends Edge> boolean isomorphicK(AbstractGraph<V, E> g1,
 	      AbstractGraph<V, E> g2, int k)
 	  {
 	    KNeighborhoodTree<V, E> nt1 = new KNeighborhoodTree<V, E>(g1, true, k);
 	    KNeighborhoodTree<V, E> nt2 = new KNeighborhoodTree<V, E>(g2, true, k);
-	    return nt1.computeLexicographicEncoding()
-	        .equals(nt2.computeLexicographicEncoding());
+	    return Arrays.equals(nt1.computeCanonicalEncoding(),
+	        nt2.computeCanonicalEncoding());
 	  }
 
   public static <V, E extends Edge> boolean isomorphicV1Plus(
@@ -56,26 +65,37 @@ public class TestIsomorphic
   {
     NeighborhoodTreeV2<V, E> nt1 = new NeighborhoodTreeV2<V, E>(g1, true);
     NeighborhoodTreeV2<V, E> nt2 = new NeighborhoodTreeV2<V, E>(g2, true);
-    return nt1.computeLexicographicEncoding()
-        .equals(nt2.computeLexicographicEncoding());
+    return Arrays.equals(nt1.computeCanonicalEncoding(),
+        nt2.computeCanonicalEncoding());
   }
 
   public static <V, E> boolean isomorphicWLCompressed(AbstractGraph<V, E> g1,
       AbstractGraph<V, E> g2)
   {
-    return new WeisfeilerLehmanCompressed<V, E>(g1, true)
-        .computeLexicographicEncoding()
-        .equals(new WeisfeilerLehmanCompressed<V, E>(g2, true)
-            .computeLexicographicEncoding());
+    // the colors only have to be comparable between g1 and g2
+    WLColorDictionary dictionary = new WLColorDictionary();
+    WeisfeilerLehmanCompressed<V, E> wl1 = new WeisfeilerLehmanCompressed<V, E>(
+        g1, dictionary);
+    WeisfeilerLehmanCompressed<V, E> wl2 = new WeisfeilerLehmanCompressed<V, E>(
+        g2, dictionary);
+    wl1.fullyRefine();
+    wl2.fullyRefine();
+    return wl1.computeLexicographicEncoding()
+        .equals(wl2.computeLexicographicEncoding());
   }
 
   public static <V, E> boolean isomorphicWLCompressedLA(AbstractGraph<V, E> g1,
       AbstractGraph<V, E> g2)
   {
-    return new WeisfeilerLehmanCompressedLookAhead<V, E>(g1, true)
-        .computeLexicographicEncoding()
-        .equals(new WeisfeilerLehmanCompressedLookAhead<V, E>(g2, true)
-            .computeLexicographicEncoding());
+    WLColorDictionary dictionary = new WLColorDictionary();
+    WeisfeilerLehmanCompressedLookAhead<V, E> wl1 = new WeisfeilerLehmanCompressedLookAhead<V, E>(
+        g1, dictionary);
+    WeisfeilerLehmanCompressedLookAhead<V, E> wl2 = new WeisfeilerLehmanCompressedLookAhead<V, E>(
+        g2, dictionary);
+    wl1.fullyRefine();
+    wl2.fullyRefine();
+    return wl1.computeLexicographicEncoding()
+        .equals(wl2.computeLexicographicEncoding());
   }
 
   public static <V, E extends Edge> boolean isomorphicWL(AbstractGraph<V, E> g1,
@@ -89,10 +109,11 @@ public class TestIsomorphic
   public static <V, E extends Edge> boolean isomorphicWLLA(
       AbstractGraph<V, E> g1, AbstractGraph<V, E> g2)
   {
-    return new NeighborhoodTreeWLLookAhead<V, E>(g1, true)
-        .computeLexicographicEncoding()
-        .equals(new NeighborhoodTreeWLLookAhead<V, E>(g2, true)
-            .computeLexicographicEncoding());
+    return Arrays.equals(
+        new NeighborhoodTreeWLLookAhead<V, E>(g1, true)
+            .computeCanonicalEncoding(),
+        new NeighborhoodTreeWLLookAhead<V, E>(g2, true)
+            .computeCanonicalEncoding());
   }
 
   public static <V, E extends Edge> boolean isomorphicIterativeV1(
@@ -105,9 +126,8 @@ public class TestIsomorphic
     boolean refine2;
     do
     {
-      String enc1 = nt1.computeLexicographicEncoding();
-      String enc2 = nt2.computeLexicographicEncoding();
-      if (!enc1.equals(enc2)) return false;
+      if (!Arrays.equals(nt1.computeCanonicalEncoding(),
+          nt2.computeCanonicalEncoding())) return false;
       refine1 = nt1.refine();
       refine2 = nt2.refine();
     }
@@ -125,9 +145,8 @@ public class TestIsomorphic
     boolean refine2;
     do
     {
-      String enc1 = nt1.computeLexicographicEncoding();
-      String enc2 = nt2.computeLexicographicEncoding();
-      if (!enc1.equals(enc2)) return false;
+      if (!Arrays.equals(nt1.computeCanonicalEncoding(),
+          nt2.computeCanonicalEncoding())) return false;
       refine1 = nt1.refine();
       refine2 = nt2.refine();
     }
@@ -163,4 +182,150 @@ public class TestIsomorphic
     return new ExactGraphEditDistance().computeGraphDistance(g1, g2) == 0;
   }
 
+  /**
+   * Batch version of {@link #isomorphicWLCompressed(AbstractGraph, AbstractGraph)}:
+   * every graph is refined only once with a color dictionary shared by all
+   * graphs and the graphs are grouped by hashing their color histograms.
+   *
+   * @param graphs
+   * @return classes of graph indices, two graphs are in the same class iff
+   *         isomorphicWLCompressed is true for them
+   */
+  public static <V, E> List<List<Integer>> classesWLCompressed(
+      List<? extends AbstractGraph<V, E>> graphs)
+  {
+    WLColorDictionary dictionary = new WLColorDictionary();
+    List<ColorRefinement> refinements = new ArrayList<ColorRefinement>(
+        graphs.size());
+    for (AbstractGraph<V, E> g : graphs)
+    {
+      IndexedGraph<V, E> indexed = new IndexedGraph<V, E>(g);
+      String[] labels = new String[indexed.getNumberOfVertices()];
+      for (int v = 0; v < labels.length; ++v)
+        labels[v] = indexed.getVertex(v).toString();
+      refinements.add(new ColorRefinement(indexed, labels, dictionary));
+    }
+    ColorRefinement.refine(refinements, -1);
+
+    List<List<Integer>> fingerprints = new ArrayList<List<Integer>>(
+        graphs.size());
+    for (ColorRefinement refinement : refinements)
+    {
+      List<Integer> fingerprint = new ArrayList<Integer>();
+      for (int[] entry : refinement.getColorHistogram())
+      {
+        fingerprint.add(entry[0]);
+        fingerprint.add(entry[1]);
+      }
+      fingerprints.add(fingerprint);
+    }
+    return group(fingerprints);
+  }
+
+  /**
+   * Batch version of {@link #isomorphicWL(AbstractGraph, AbstractGraph)}, every
+   * graph is encoded once.
+   *
+   * @param graphs
+   * @return classes of graph indices with the same encoding
+   */
+  public static <V, E extends Edge> List<List<Integer>> classesWL(
+      List<? extends AbstractGraph<V, E>> graphs)
+  {
+    List<String> encodings = new ArrayList<String>(graphs.size());
+    for (AbstractGraph<V, E> g : graphs)
+      encodings.add(
+          new WeisfeilerLehman<V, E>(g, true).computeLexicographicEncoding());
+    return group(encodings);
+  }
+
+  /**
+   * Batch version of
+   * {@link #isomorphicIterativeV1(AbstractGraph, AbstractGraph)}, every graph
+   * is encoded once.
+   *
+   * @param graphs
+   * @return classes of graph indices, two graphs are in the same class iff
+   *         isomorphicIterativeV1 is true for them
+   */
+  public static <V, E extends Edge> List<List<Integer>> classesIterativeV1(
+      List<? extends AbstractGraph<V, E>> graphs)
+  {
+    List<List<Integer>> encodings = new ArrayList<List<Integer>>(
+        graphs.size());
+    for (AbstractGraph<V, E> g : graphs)
+      encodings.add(iterativeV1Encodings(g));
+    return group(encodings);
+  }
+
+  /**
+   * Candidate isomorphism classes, the graphs are grouped by their WL
+   * fingerprints (see {@link #classesWLCompressed(List)}) and only graphs with
+   * the same fingerprint are compared with the iterative V1 neighborhood tree
+   * encoding.
+   *
+   * @param graphs
+   * @return classes of graph indices that are not distinguished by WL and V1
+   */
+  public static <V, E extends Edge> List<List<Integer>> candidateIsomorphismClasses(
+      List<? extends AbstractGraph<V, E>> graphs)
+  {
+    List<List<Integer>> classes = new ArrayList<List<Integer>>();
+    for (List<Integer> candidates : classesWLCompressed(graphs))
+    {
+      if (candidates.size() == 1)
+      {
+        classes.add(candidates);
+        continue;
+      }
+      List<List<Integer>> encodings = new ArrayList<List<Integer>>(
+          candidates.size());
+      for (int i : candidates)
+        encodings.add(iterativeV1Encodings(graphs.get(i)));
+      for (List<Integer> part : group(encodings))
+      {
+        List<Integer> graphClass = new ArrayList<Integer>(part.size());
+        for (int i : part)
+          graphClass.add(candidates.get(i));
+        classes.add(graphClass);
+      }
+    }
+    return classes;
+  }
+
+  /**
+   * @return the canonical encodings after every refinement step until the
+   *         trees are fully refined, as compared by isomorphicIterativeV1, every
+   *         encoding is preceded by its length
+   */
+  private static <V, E extends Edge> List<Integer> iterativeV1Encodings(
+      AbstractGraph<V, E> g)
+  {
+    NeighborhoodTreeV1<V, E> nt = new NeighborhoodTreeV1<V, E>(g);
+    List<Integer> encodings = new ArrayList<Integer>();
+    do
+    {
+      int[] encoding = nt.computeCanonicalEncoding();
+      encodings.add(encoding.length);
+      for (int id : encoding)
+        encodings.add(id);
+    }
+    while (nt.refine());
+    return encodings;
+  }
+
+  /**
+   * @param fingerprints
+   * @return the indices of equal fingerprints, in the order of their first
+   *         occurrence
+   */
+  private static <K> List<List<Integer>> group(List<K> fingerprints)
+  {
+    Map<K, List<Integer>> classes = new LinkedHashMap<K, List<Integer>>();
+    for (int i = 0; i < fingerprints.size(); ++i)
+      classes.computeIfAbsent(fingerprints.get(i), k -> new ArrayList<Integer>())
+          .add(i);
+    return new ArrayList<List<Integer>>(classes.values());
+  }
+
 }
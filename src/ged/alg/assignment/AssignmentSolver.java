@@ -0,0 +1,99 @@
+package ged.alg.assignment;
+
+import java.util.Arrays;
+
+/**
+ * Strategy for solving linear assignment problems. The cost matrix may be
+ * rectangular, as for {@link HungarianAlgorithm} rows that cannot be assigned
+ * get the column -1.
+ */
+public interface AssignmentSolver
+{
+  /**
+   * @param c
+   *          cost matrix, c[i][j] is the cost of assigning row i to column j
+   * @return the column assigned to every row, -1 for unassigned rows
+   */
+  int[] assignment(double[][] c);
+
+  /**
+   * @param c
+   * @return the cost of the assignment computed by {@link #assignment(double[][])}
+   */
+  default double assignmentCost(double[][] c)
+  {
+    int[] assignment = assignment(c);
+    double costs = 0;
+    for (int i = 0; i < assignment.length; ++i)
+      if (assignment[i] >= 0) costs += c[i][assignment[i]];
+    return costs;
+  }
+
+  /**
+   * @param c
+   *          square cost matrix in row-major order, it is not modified
+   * @param dim
+   *          number of rows and columns of c
+   * @return same as {@link #assignmentCost(double[][])}
+   */
+  default double assignmentCost(double[] c, int dim)
+  {
+    double[][] matrix = new double[dim][dim];
+    for (int i = 0; i < dim; ++i)
+      System.arraycopy(c, i * dim, matrix[i], 0, dim);
+    return assignmentCost(matrix);
+  }
+
+  /**
+   * Solves the assignment problem of Riesen and Bunke between the vertices of
+   * two graphs with n and m vertices. The (n + m) x (n + m) matrix consists of
+   * the substitution costs, the deletion costs on the diagonal of the upper
+   * right block, the insertion costs on the diagonal of the lower left block,
+   * infinite costs elsewhere in these blocks and a zero lower right block.
+   *
+   * The default implementation materializes this matrix, sparse solvers can
+   * work on the blocks directly.
+   *
+   * @param substitution
+   *          n x m substitution costs
+   * @param deletion
+   *          n deletion costs
+   * @param insertion
+   *          m insertion costs
+   * @return for each of the n rows the column in the full matrix: j < m for a
+   *         substitution by j and m + i for the deletion of row i
+   */
+  default int[] riesenBunkeAssignment(double[][] substitution,
+      double[] deletion, double[] insertion)
+  {
+    int n = deletion.length;
+    int m = insertion.length;
+    double[][] c = new double[n + m][n + m];
+    for (int i = 0; i < n; ++i)
+    {
+      System.arraycopy(substitution[i], 0, c[i], 0, m);
+      Arrays.fill(c[i], m, n + m, Double.POSITIVE_INFINITY);
+      c[i][m + i] = deletion[i];
+    }
+    for (int j = 0; j < m; ++j)
+    {
+      Arrays.fill(c[n + j], 0, m, Double.POSITIVE_INFINITY);
+      c[n + j][j] = insertion[j];
+    }
+    return Arrays.copyOf(assignment(c), n);
+  }
+
+  /**
+   * @return true if {@link #assignment(double[][])} always returns an optimal
+   *         assignment
+   */
+  default boolean isOptimal()
+  {
+    return true;
+  }
+
+  /**
+   * @return short name used in the ids of the distances
+   */
+  String getID();
+}
@@ -0,0 +1,299 @@
+package ged.alg.assignment;
+
+import java.util.Arrays;
+
+/**
+ * Reusable memory for solving many small square assignment problems, e.g. the
+ * child assignments of the SDTED recursion. Cost matrices are flat row-major
+ * arrays, one per recursion level, and the Hungarian algorithm (same steps as
+ * {@link HungarianAlgorithm}) works on scratch arrays that only grow to the
+ * largest dimension seen. After warm-up no allocations happen.
+ *
+ * Tiny problems, which dominate the SDTED on sparse graphs, are solved
+ * directly: up to three rows in closed form and up to {@link #MAX_DP_DIM} rows
+ * by dynamic programming over the subsets of assigned columns.
+ *
+ * A workspace must only be used by one thread, use {@link #get()} to obtain the
+ * workspace of the current thread.
+ */
+public final class AssignmentWorkspace
+{
+  /**
+   * largest dimension solved by the subset dynamic program instead of the
+   * Hungarian algorithm
+   */
+  public static final int MAX_DP_DIM = 8;
+
+  private static final ThreadLocal<AssignmentWorkspace> WORKSPACE = ThreadLocal
+      .withInitial(AssignmentWorkspace::new);
+
+  private double[][] matrices = new double[8][];
+  private final double[] subsetCosts = new double[1 << MAX_DP_DIM];
+
+  private int capacity = 0;
+  private double[] costMatrix = new double[0];
+  private double[] labelByWorker, labelByJob;
+  private int[] minSlackWorkerByJob;
+  private double[] minSlackValueByJob;
+  private int[] matchJobByWorker, matchWorkerByJob;
+  private int[] parentWorkerByCommittedJob;
+  private boolean[] committedWorkers;
+
+  private AssignmentWorkspace()
+  {
+    ensureCapacity(8);
+  }
+
+  /**
+   * @return the workspace of the current thread
+   */
+  public static AssignmentWorkspace get()
+  {
+    return WORKSPACE.get();
+  }
+
+  /**
+   * @param level
+   *          recursion level, matrices of different levels can be used at the
+   *          same time
+   * @param dim
+   * @return a flat array with at least dim * dim entries, the content is
+   *         undefined
+   */
+  public double[] matrix(int level, int dim)
+  {
+    if (level >= matrices.length)
+      matrices = Arrays.copyOf(matrices, Math.max(level + 1, matrices.length * 2));
+    double[] m = matrices[level];
+    if (m == null || m.length < dim * dim)
+    {
+      m = new double[Math.max(dim * dim, m == null ? 16 : m.length * 2)];
+      matrices[level] = m;
+    }
+    return m;
+  }
+
+  /**
+   * @param c
+   *          square cost matrix in row-major order, it is not modified
+   * @param dim
+   *          number of rows and columns of c
+   * @return the cost of an optimal assignment
+   */
+  public double assignmentCost(double[] c, int dim)
+  {
+    switch (dim)
+    {
+      case 0:
+        return 0;
+      case 1:
+        return c[0];
+      case 2:
+        return Math.min(c[0] + c[3], c[1] + c[2]);
+      case 3:
+        return Math.min(
+            Math.min(c[0] + Math.min(c[4] + c[8], c[5] + c[7]),
+                c[1] + Math.min(c[3] + c[8], c[5] + c[6])),
+            c[2] + Math.min(c[3] + c[7], c[4] + c[6]));
+      default:
+        if (dim <= MAX_DP_DIM) return subsetAssignmentCost(c, dim);
+    }
+    solve(c, dim);
+    double costs = 0;
+    for (int w = 0; w < dim; ++w)
+      costs += c[w * dim + matchJobByWorker[w]];
+    return costs;
+  }
+
+  /**
+   * subsetCosts[S] is the cost of an optimal assignment of the first |S| rows to
+   * the columns in S, O(2^dim * dim) time.
+   */
+  private double subsetAssignmentCost(double[] c, int dim)
+  {
+    int full = (1 << dim) - 1;
+    subsetCosts[0] = 0;
+    for (int set = 1; set <= full; ++set)
+    {
+      int row = (Integer.bitCount(set) - 1) * dim;
+      double min = Double.POSITIVE_INFINITY;
+      for (int rest = set; rest != 0; rest &= rest - 1)
+      {
+        int j = Integer.numberOfTrailingZeros(rest);
+        double cost = subsetCosts[set ^ (1 << j)] + c[row + j];
+        if (cost < min) min = cost;
+      }
+      subsetCosts[set] = min;
+    }
+    return subsetCosts[full];
+  }
+
+  private void ensureCapacity(int dim)
+  {
+    if (dim <= capacity) return;
+    capacity = Math.max(dim, capacity * 2);
+    costMatrix = new double[capacity * capacity];
+    labelByWorker = new double[capacity];
+    labelByJob = new double[capacity];
+    minSlackWorkerByJob = new int[capacity];
+    minSlackValueByJob = new double[capacity];
+    matchJobByWorker = new int[capacity];
+    matchWorkerByJob = new int[capacity];
+    parentWorkerByCommittedJob = new int[capacity];
+    committedWorkers = new boolean[capacity];
+  }
+
+  /**
+   * Hungarian algorithm on a copy of c, the result is stored in
+   * matchJobByWorker.
+   */
+  private void solve(double[] c, int dim)
+  {
+    ensureCapacity(dim);
+    System.arraycopy(c, 0, costMatrix, 0, dim * dim);
+    Arrays.fill(labelByWorker, 0, dim, 0);
+    Arrays.fill(matchJobByWorker, 0, dim, -1);
+    Arrays.fill(matchWorkerByJob, 0, dim, -1);
+
+    reduce(dim);
+    computeInitialFeasibleSolution(dim);
+    greedyMatch(dim);
+
+    int w = fetchUnmatchedWorker(dim);
+    while (w < dim)
+    {
+      initializePhase(w, dim);
+      executePhase(dim);
+      w = fetchUnmatchedWorker(dim);
+    }
+  }
+
+  private void reduce(int dim)
+  {
+    for (int w = 0; w < dim; ++w)
+    {
+      int row = w * dim;
+      double min = Double.POSITIVE_INFINITY;
+      for (int j = 0; j < dim; ++j)
+        if (costMatrix[row + j] < min) min = costMatrix[row + j];
+      for (int j = 0; j < dim; ++j)
+        costMatrix[row + j] -= min;
+    }
+    // labelByJob is used as temporary storage for the column minima
+    double[] min = labelByJob;
+    Arrays.fill(min, 0, dim, Double.POSITIVE_INFINITY);
+    for (int w = 0; w < dim; ++w)
+      for (int j = 0; j < dim; ++j)
+        if (costMatrix[w * dim + j] < min[j]) min[j] = costMatrix[w * dim + j];
+    for (int w = 0; w < dim; ++w)
+      for (int j = 0; j < dim; ++j)
+        costMatrix[w * dim + j] -= min[j];
+  }
+
+  private void computeInitialFeasibleSolution(int dim)
+  {
+    Arrays.fill(labelByJob, 0, dim, Double.POSITIVE_INFINITY);
+    for (int w = 0; w < dim; ++w)
+      for (int j = 0; j < dim; ++j)
+        if (costMatrix[w * dim + j] < labelByJob[j])
+          labelByJob[j] = costMatrix[w * dim + j];
+  }
+
+  private void greedyMatch(int dim)
+  {
+    for (int w = 0; w < dim; ++w)
+      for (int j = 0; j < dim; ++j)
+        if (matchJobByWorker[w] == -1 && matchWorkerByJob[j] == -1
+            && costMatrix[w * dim + j] - labelByWorker[w] - labelByJob[j] == 0)
+          match(w, j);
+  }
+
+  private int fetchUnmatchedWorker(int dim)
+  {
+    int w;
+    for (w = 0; w < dim; ++w)
+      if (matchJobByWorker[w] == -1) break;
+    return w;
+  }
+
+  private void initializePhase(int w, int dim)
+  {
+    Arrays.fill(committedWorkers, 0, dim, false);
+    Arrays.fill(parentWorkerByCommittedJob, 0, dim, -1);
+    committedWorkers[w] = true;
+    for (int j = 0; j < dim; ++j)
+    {
+      minSlackValueByJob[j] = costMatrix[w * dim + j] - labelByWorker[w]
+          - labelByJob[j];
+      minSlackWorkerByJob[j] = w;
+    }
+  }
+
+  private void executePhase(int dim)
+  {
+    while (true)
+    {
+      int minSlackWorker = -1, minSlackJob = -1;
+      double minSlackValue = Double.POSITIVE_INFINITY;
+      for (int j = 0; j < dim; ++j)
+        if (parentWorkerByCommittedJob[j] == -1
+            && minSlackValueByJob[j] < minSlackValue)
+        {
+          minSlackValue = minSlackValueByJob[j];
+          minSlackWorker = minSlackWorkerByJob[j];
+          minSlackJob = j;
+        }
+      if (minSlackValue > 0) updateLabeling(minSlackValue, dim);
+      parentWorkerByCommittedJob[minSlackJob] = minSlackWorker;
+      if (matchWorkerByJob[minSlackJob] == -1)
+      {
+        // an augmenting path has been found
+        int committedJob = minSlackJob;
+        int parentWorker = parentWorkerByCommittedJob[committedJob];
+        while (true)
+        {
+          int temp = matchJobByWorker[parentWorker];
+          match(parentWorker, committedJob);
+          committedJob = temp;
+          if (committedJob == -1) break;
+          parentWorker = parentWorkerByCommittedJob[committedJob];
+        }
+        return;
+      }
+      else
+      {
+        // update slack values since the set of committed workers grew
+        int worker = matchWorkerByJob[minSlackJob];
+        committedWorkers[worker] = true;
+        for (int j = 0; j < dim; ++j)
+          if (parentWorkerByCommittedJob[j] == -1)
+          {
+            double slack = costMatrix[worker * dim + j] - labelByWorker[worker]
+                - labelByJob[j];
+            if (minSlackValueByJob[j] > slack)
+            {
+              minSlackValueByJob[j] = slack;
+              minSlackWorkerByJob[j] = worker;
+            }
+          }
+      }
+    }
+  }
+
+  private void updateLabeling(double slack, int dim)
+  {
+    for (int w = 0; w < dim; ++w)
+      if (committedWorkers[w]) labelByWorker[w] += slack;
+    for (int j = 0; j < dim; ++j)
+      if (parentWorkerByCommittedJob[j] != -1)
+        labelByJob[j] -= slack;
+      else
+        minSlackValueByJob[j] -= slack;
+  }
+
+  private void match(int w, int j)
+  {
+    matchJobByWorker[w] = j;
+    matchWorkerByJob[j] = w;
+  }
+}
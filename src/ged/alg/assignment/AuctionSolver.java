@@ -0,0 +1,126 @@
+package ged.alg.assignment;
+
+import java.util.Arrays;
+
+/**
+ * Forward auction algorithm of Bertsekas with epsilon scaling. Unassigned rows
+ * bid for their cheapest column and raise its price by the difference to the
+ * second cheapest column plus epsilon. The cost of the result exceeds the
+ * optimum by at most the given maximum error.
+ */
+public class AuctionSolver implements AssignmentSolver
+{
+  private static final double SCALING_FACTOR = 5;
+
+  private final double maxError;
+
+  public AuctionSolver()
+  {
+    this(1e-6);
+  }
+
+  /**
+   * @param maxError
+   *          maximum difference between the cost of the result and the optimal
+   *          cost
+   */
+  public AuctionSolver(double maxError)
+  {
+    if (maxError <= 0)
+      throw new IllegalArgumentException("The maximum error must be positive!");
+    this.maxError = maxError;
+  }
+
+  @Override
+  public int[] assignment(double[][] c)
+  {
+    int n = c.length;
+    if (n == 0) return new int[0];
+    int m = c[0].length;
+    int dim = Math.max(n, m);
+
+    int[] columnByRow = new int[dim];
+    if (dim == 1)
+      columnByRow[0] = 0;
+    else
+      auction(JonkerVolgenantSolver.squareMatrix(c, dim), dim, columnByRow);
+
+    int[] assignment = new int[n];
+    for (int i = 0; i < n; ++i)
+      assignment[i] = columnByRow[i] < m ? columnByRow[i] : -1;
+    return assignment;
+  }
+
+  private void auction(double[][] c, int dim, int[] columnByRow)
+  {
+    double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+    for (double[] row : c)
+      for (double cost : row)
+      {
+        min = Math.min(min, cost);
+        max = Math.max(max, cost);
+      }
+
+    // n * finalEpsilon bounds the error of the result
+    double finalEpsilon = maxError / dim;
+    double epsilon = Math.max((max - min) / 4, finalEpsilon);
+    double[] prices = new double[dim];
+    int[] rowByColumn = new int[dim];
+    int[] unassigned = new int[dim];
+
+    while (true)
+    {
+      Arrays.fill(columnByRow, -1);
+      Arrays.fill(rowByColumn, -1);
+      for (int i = 0; i < dim; ++i)
+        unassigned[i] = i;
+      int numUnassigned = dim;
+
+      while (numUnassigned > 0)
+      {
+        int i = unassigned[--numUnassigned];
+        // cheapest and second cheapest column including the prices
+        int best = -1;
+        double bestValue = Double.POSITIVE_INFINITY;
+        double secondValue = Double.POSITIVE_INFINITY;
+        for (int j = 0; j < dim; ++j)
+        {
+          double value = c[i][j] + prices[j];
+          if (value < bestValue)
+          {
+            secondValue = bestValue;
+            bestValue = value;
+            best = j;
+          }
+          else if (value < secondValue) secondValue = value;
+        }
+
+        prices[best] += secondValue - bestValue + epsilon;
+        int previous = rowByColumn[best];
+        if (previous != -1)
+        {
+          columnByRow[previous] = -1;
+          unassigned[numUnassigned++] = previous;
+        }
+        rowByColumn[best] = i;
+        columnByRow[i] = best;
+      }
+
+      if (epsilon <= finalEpsilon) return;
+      epsilon = Math.max(epsilon / SCALING_FACTOR, finalEpsilon);
+    }
+  }
+
+  @Override
+  public boolean isOptimal()
+  {
+    // only up to the maximum error
+    return false;
+  }
+
+  @Override
+  public String getID()
+  {
+    return "Auction";
+  }
+}
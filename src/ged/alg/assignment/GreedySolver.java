@@ -0,0 +1,43 @@
+package ged.alg.assignment;
+
+/**
+ * Greedy assignment in O(n * m): the rows are processed in order and every row
+ * gets the cheapest column that is still free. The result is a valid but in
+ * general not an optimal assignment. In Riesen-Bunke matrices a row may end up
+ * with an infinite entry if all its finite columns are taken, the vertex map is
+ * still a valid edit path.
+ */
+public class GreedySolver implements AssignmentSolver
+{
+  @Override
+  public int[] assignment(double[][] c)
+  {
+    int n = c.length;
+    int[] assignment = new int[n];
+    if (n == 0) return assignment;
+    int m = c[0].length;
+
+    boolean[] used = new boolean[m];
+    for (int i = 0; i < n; ++i)
+    {
+      int best = -1;
+      for (int j = 0; j < m; ++j)
+        if (!used[j] && (best == -1 || c[i][j] < c[i][best])) best = j;
+      if (best != -1) used[best] = true;
+      assignment[i] = best;
+    }
+    return assignment;
+  }
+
+  @Override
+  public boolean isOptimal()
+  {
+    return false;
+  }
+
+  @Override
+  public String getID()
+  {
+    return "Greedy";
+  }
+}
@@ -0,0 +1,36 @@
+package ged.alg.assignment;
+
+/**
+ * Optimal assignment with the Hungarian algorithm, O(n^3). This is the default
+ * solver of all distances.
+ */
+public class HungarianSolver implements AssignmentSolver
+{
+  @Override
+  public int[] assignment(double[][] c)
+  {
+    return HungarianAlgorithm.assignment(c);
+  }
+
+  @Override
+  public double assignmentCost(double[][] c)
+  {
+    return HungarianAlgorithm.assignmentCost(c);
+  }
+
+  /**
+   * Uses the workspace of the current thread, so small problems are solved
+   * without allocations.
+   */
+  @Override
+  public double assignmentCost(double[] c, int dim)
+  {
+    return AssignmentWorkspace.get().assignmentCost(c, dim);
+  }
+
+  @Override
+  public String getID()
+  {
+    return "Hungarian";
+  }
+}
@@ -0,0 +1,56 @@
+package ged.alg.assignment;
+
+/**
+ * Optimal assignment with the shortest augmenting path algorithm of Jonker and
+ * Volgenant (LAPJV), see {@link VolgenantJonker}. Rectangular matrices are
+ * padded with zero costs and infinite costs are replaced by a finite value
+ * larger than any assignment of finite costs.
+ */
+public class JonkerVolgenantSolver implements AssignmentSolver
+{
+  @Override
+  public int[] assignment(double[][] c)
+  {
+    int n = c.length;
+    if (n == 0) return new int[0];
+    int m = c[0].length;
+    int dim = Math.max(n, m);
+
+    double[][] square = squareMatrix(c, dim);
+    int[] rowsol = new int[dim];
+    int[] colsol = new int[dim];
+    VolgenantJonker.lap(dim, square, rowsol, colsol);
+
+    int[] assignment = new int[n];
+    for (int i = 0; i < n; ++i)
+      assignment[i] = rowsol[i] < m ? rowsol[i] : -1;
+    return assignment;
+  }
+
+  @Override
+  public String getID()
+  {
+    return "LAPJV";
+  }
+
+  /**
+   * @param c
+   * @param dim
+   * @return a dim x dim copy of c with zero padding and finite costs only
+   */
+  static double[][] squareMatrix(double[][] c, int dim)
+  {
+    double maxAbs = 0;
+    for (double[] row : c)
+      for (double cost : row)
+        if (!Double.isInfinite(cost)) maxAbs = Math.max(maxAbs, Math.abs(cost));
+    // every assignment using a replaced entry is worse than any other
+    double big = 2 * dim * (maxAbs + 1);
+
+    double[][] square = new double[dim][dim];
+    for (int i = 0; i < c.length; ++i)
+      for (int j = 0; j < c[i].length; ++j)
+        square[i][j] = Double.isInfinite(c[i][j]) ? big : c[i][j];
+    return square;
+  }
+}
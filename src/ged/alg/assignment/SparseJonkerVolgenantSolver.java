@@ -0,0 +1,134 @@
+package ged.alg.assignment;
+
+import java.util.Arrays;
+
+/**
+ * Shortest augmenting path solver (as LAPJV) for Riesen-Bunke assignment
+ * problems that never materializes the (n + m) x (n + m) matrix. Subtracting
+ * the deletion and insertion costs gives the equivalent problem of assigning
+ * the n rows either to one of the m columns with the reduced cost
+ * substitution[i][j] - deletion[i] - insertion[j] or to a private slot of cost
+ * zero (the deletion). Columns that stay free are insertions. This needs
+ * O(n * m) memory for the given substitution costs and O(n + m) additional
+ * memory.
+ *
+ * General assignment problems are solved by {@link JonkerVolgenantSolver}.
+ */
+public class SparseJonkerVolgenantSolver extends JonkerVolgenantSolver
+{
+  @Override
+  public int[] riesenBunkeAssignment(double[][] substitution,
+      double[] deletion, double[] insertion)
+  {
+    int n = deletion.length;
+    int m = insertion.length;
+    // columns 1..m are the vertices of the second graph, column m + 1 + i the
+    // private slot of row i, index 0 is used as sentinel
+    int cols = m + n;
+    double[] u = new double[n + 1];
+    double[] v = new double[cols + 1];
+    int[] rowByColumn = new int[cols + 1];
+    int[] way = new int[cols + 1];
+    double[] minv = new double[cols + 1];
+    boolean[] used = new boolean[cols + 1];
+
+    // initial feasible duals (v = 0) and greedy matching on tight entries
+    boolean[] matched = new boolean[n + 1];
+    for (int row = 1; row <= n; ++row)
+    {
+      int best = m + row;
+      double min = 0;// own slot
+      for (int j = 1; j <= m; ++j)
+      {
+        double cost = substitution[row - 1][j - 1] - deletion[row - 1]
+            - insertion[j - 1];
+        if (cost < min
+            || cost == min && rowByColumn[best] != 0 && rowByColumn[j] == 0)
+        {
+          min = cost;
+          best = j;
+        }
+      }
+      u[row] = min;
+      if (rowByColumn[best] == 0)
+      {
+        rowByColumn[best] = row;
+        matched[row] = true;
+      }
+    }
+
+    for (int row = 1; row <= n; ++row)
+    {
+      if (matched[row]) continue;
+      rowByColumn[0] = row;
+      int j0 = 0;
+      Arrays.fill(minv, Double.POSITIVE_INFINITY);
+      Arrays.fill(used, false);
+      do
+      {
+        used[j0] = true;
+        int i0 = rowByColumn[j0];
+        double delta = Double.POSITIVE_INFINITY;
+        int j1 = 0;
+        // only the own slot of row i0 is reachable
+        int slot = m + i0;
+        for (int j = 1; j <= cols; ++j)
+        {
+          if (used[j]) continue;
+          if (j <= m || j == slot)
+          {
+            double cost = j == slot ? 0
+                : substitution[i0 - 1][j - 1] - deletion[i0 - 1]
+                    - insertion[j - 1];
+            double cur = cost - u[i0] - v[j];
+            if (cur < minv[j])
+            {
+              minv[j] = cur;
+              way[j] = j0;
+            }
+          }
+          if (minv[j] < delta)
+          {
+            delta = minv[j];
+            j1 = j;
+          }
+        }
+        for (int j = 0; j <= cols; ++j)
+          if (used[j])
+          {
+            u[rowByColumn[j]] += delta;
+            v[j] -= delta;
+          }
+          else
+            minv[j] -= delta;
+        j0 = j1;
+      }
+      while (rowByColumn[j0] != 0);
+
+      // augment along the path
+      do
+      {
+        int j1 = way[j0];
+        rowByColumn[j0] = rowByColumn[j1];
+        j0 = j1;
+      }
+      while (j0 != 0);
+    }
+
+    int[] assignment = new int[n];
+    for (int j = 1; j <= cols; ++j)
+    {
+      int row = rowByColumn[j];
+      if (row == 0) continue;
+      // slots are mapped to the deletion columns of the full matrix
+      assignment[row - 1] = j <= m ? j - 1 : m + row - 1;
+    }
+    return assignment;
+  }
+
+  @Override
+  public String getID()
+  {
+    return "SparseLAPJV";
+  }
+}
@@ -16,7 +16,7 @@ public class VolgenantJonker
    * Assignment Problems," Computing 38, 325-340, 1987
    *
    *************************************************************************/
-  private static final int BIG = 100000;
+  private static final double BIG = Double.MAX_VALUE;
   private final int[] rowsol;
   private final int[] colsol;
   private final int dim;
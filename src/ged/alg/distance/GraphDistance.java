@@ -7,6 +7,8 @@ import java.util.Map;
 
 import org.jgrapht.graph.AbstractGraph;
 
+import ged.alg.assignment.AssignmentSolver;
+import ged.alg.assignment.HungarianSolver;
 import ged.structures.graph.Edge;
 import ged.structures.graph.Vertex;
 
@@ -17,6 +19,8 @@ public abstract class GraphDistance {
   public static final double EDGE_INSERTION_DELETION_COSTS = 1;
   public static final double EDGE_SUBSTITUTION_COSTS = 1;
 
+  private AssignmentSolver assignmentSolver = new HungarianSolver();
+
   public abstract <V extends Vertex, E extends Edge> double computeGraphDistance(AbstractGraph<V, E> g1, AbstractGraph<V, E> g2);
 
   /**
@@ -102,5 +106,31 @@ public abstract class GraphDistance {
 
     return r;
   }
+
+  /**
+   * @param assignmentSolver
+   *          solver used for the assignment problems of this distance, the
+   *          default is the Hungarian algorithm
+   */
+  public void setAssignmentSolver(AssignmentSolver assignmentSolver)
+  {
+    this.assignmentSolver = assignmentSolver;
+  }
+
+  public AssignmentSolver getAssignmentSolver()
+  {
+    return assignmentSolver;
+  }
+
+  /**
+   * @return suffix for {@link #getID()} naming the assignment solver, empty for
+   *         the default solver so the ids of existing results do not change
+   */
+  protected String getAssignmentSolverSuffix()
+  {
+    return assignmentSolver instanceof HungarianSolver ? ""
+        : "_" + assignmentSolver.getID();
+  }
+
   public abstract String getID();
 }
@@ -1,17 +1,30 @@
 package ged.alg.distance;
 
+import java.util.ArrayList;
 import java.util.List;
 
+import org.jgrapht.graph.AbstractGraph;
+
+import ged.alg.assignment.AssignmentSolver;
 import ged.alg.distance.tree.SDTEDCached;
+import ged.alg.distance.tree.SDTEDCostMap;
+import ged.alg.distance.tree.SDTEDCostTable;
 import ged.alg.distance.tree.SDTEDUncached;
+import ged.alg.graphencoder.tree.NeighborhoodTreeIndex;
+import ged.alg.graphencoder.tree.NeighborhoodTreeIndex.Trees;
 import ged.structures.graph.Edge;
 import ged.structures.graph.Vertex;
+import ged.structures.tree.ArrayTree;
 import ged.structures.tree.CTree;
+import ged.structures.tree.CompactTree;
 
 public abstract class SDTEDbasedDistance extends GraphDistance
 {
   protected final double layerWeightFactor;
   private boolean useCache = true;
+  private SDTEDCostTable sharedCache = null;
+  private boolean compactTrees = false;
+  private boolean boundedAssignment = false;
 
   protected SDTEDbasedDistance(double layerWeightFactor)
   {
@@ -23,11 +36,238 @@ public abstract class SDTEDbasedDistance extends GraphDistance
     this.useCache = useCache;
   }
 
+  /**
+   * @param sharedCache
+   *          table that keeps the computed subtree costs across calls of
+   *          computeGraphDistance, e.g. for all pairs of a dataset. null
+   *          (default) uses a new table for every graph pair. As the costs
+   *          depend on the layerWeightFactor and on the assignment solver of
+   *          the children, e.g. {@link ged.alg.assignment.GreedySolver} gives
+   *          other costs than the Hungarian algorithm, the table must only be
+   *          shared with distances using the same factor and solver.
+   */
+  public void setSharedCache(SDTEDCostTable sharedCache)
+  {
+    this.sharedCache = sharedCache;
+  }
+
+  public SDTEDCostTable getSharedCache()
+  {
+    return sharedCache;
+  }
+
+  /**
+   * @param compactTrees
+   *          if true the cached assignment builds {@link ArrayTree}s directly
+   *          from the graphs, like {@link NeighborhoodTreeIndex}, instead of
+   *          the jgrapht trees, this requires the uniform label cost model of
+   *          the vertices and edges
+   */
+  public void setCompactTrees(boolean compactTrees)
+  {
+    this.compactTrees = compactTrees;
+  }
+
+  /**
+   * @param boundedAssignment
+   *          if true the cached assignment starts from lower bounds and only
+   *          computes the SDTED of tree pairs the optimal assignment depends on,
+   *          see {@link SDTEDCached#computeBoundedAssignment(List, List)}. This
+   *          implies compact trees. The assignment cost is the same, but among
+   *          several optimal assignments another one may be chosen, so the
+   *          GED may differ and the id gets the suffix "_bounded".
+   */
+  public void setBoundedAssignment(boolean boundedAssignment)
+  {
+    this.boundedAssignment = boundedAssignment;
+  }
+
+  /**
+   * @return suffix for {@link #getID()} marking the bounded assignment, empty
+   *         otherwise, so results of both modes are kept apart
+   */
+  protected String getBoundedAssignmentSuffix()
+  {
+    return boundedAssignment ? "_bounded" : "";
+  }
+
   protected <V extends Vertex, E extends Edge> int[] assignment(
       List<CTree<V, E>> trees1, List<CTree<V, E>> trees2,
       double layerWeightFactor)
   {
-    return useCache ? SDTEDCached.assignment(trees1, trees2, layerWeightFactor)
-        : SDTEDUncached.assignment(trees1, trees2, layerWeightFactor);
+    AssignmentSolver solver = getAssignmentSolver();
+    final double[][] c;
+    if (!useCache)//
+      c = new SDTEDUncached(layerWeightFactor, solver)
+          .computeCostMatrix(trees1, trees2);
+    else
+      c = new SDTEDCached(layerWeightFactor,
+          sharedCache == null ? new SDTEDCostMap() : sharedCache, solver)
+          .computeCostMatrix(trees1, trees2);
+    return solver.assignment(c);
+  }
+
+  /**
+   * @return SDTED on compact trees with the cost table of this distance
+   */
+  private SDTEDCached compactSDTED()
+  {
+    return new SDTEDCached(layerWeightFactor,
+        sharedCache == null ? new SDTEDCostMap() : sharedCache,
+        getAssignmentSolver());
+  }
+
+  /**
+   * @param trees1
+   * @param trees2
+   * @return the optimal assignment between compact trees, bounded if
+   *         {@link #setBoundedAssignment(boolean)} is set
+   */
+  protected int[] compactAssignment(List<? extends CompactTree> trees1,
+      List<? extends CompactTree> trees2)
+  {
+    return compactAssignment(compactSDTED(), trees1, trees2);
+  }
+
+  /**
+   * @return true if computeGraphDistance has to use
+   *         {@link #computeCompactGraphDistance(AbstractGraph, AbstractGraph)}
+   *         instead of the jgrapht trees
+   */
+  protected boolean usesCompactTrees()
+  {
+    return useCache && (compactTrees || boundedAssignment);
   }
+
+  /**
+   * @param g1
+   * @param g2
+   * @return the distance computed on compact trees built directly from the
+   *         graphs, so the jgrapht trees are never built
+   */
+  protected <V extends Vertex, E extends Edge> double computeCompactGraphDistance(
+      AbstractGraph<V, E> g1, AbstractGraph<V, E> g2)
+  {
+    List<V> vertices1 = new ArrayList<V>();
+    List<V> vertices2 = new ArrayList<V>();
+    List<ArrayTree> trees1 = compactTrees(g1, getIterations(), vertices1);
+    List<ArrayTree> trees2 = compactTrees(g2, getIterations(), vertices2);
+    return computeCostOfEditPath(g1, g2, vertices1, vertices2,
+        compactAssignment(trees1, trees2));
+  }
+
+  private int[] compactAssignment(SDTEDCached sdted,
+      List<? extends CompactTree> trees1, List<? extends CompactTree> trees2)
+  {
+    return boundedAssignment//
+        ? sdted.computeBoundedAssignment(trees1, trees2)
+            : getAssignmentSolver()
+                .assignment(sdted.computeCompactCostMatrix(trees1, trees2));
+  }
+
+  /**
+   * Computes the distances for all iteration counts 1 to maxIterations at
+   * once. The trees are refined only once and truncated for the smaller
+   * iteration counts, and one cost table is shared by all depths, so the
+   * costs of the shallow subtrees are reused by the deeper ones.
+   *
+   * @param g1
+   * @param g2
+   * @param maxIterations
+   * @return the distance for i iterations at index i - 1, the same as
+   *         computeGraphDistance of this distance with i iterations
+   */
+  public <V extends Vertex, E extends Edge> double[] computeGraphDistances(
+      AbstractGraph<V, E> g1, AbstractGraph<V, E> g2, int maxIterations)
+  {
+    List<V> vertices1 = new ArrayList<V>();
+    List<V> vertices2 = new ArrayList<V>();
+    List<ArrayTree> trees1 = compactTrees(g1, maxIterations, vertices1);
+    List<ArrayTree> trees2 = compactTrees(g2, maxIterations, vertices2);
+
+    SDTEDCached sdted = compactSDTED();
+    double[] distances = new double[maxIterations];
+    for (int i = 1; i <= maxIterations; ++i)
+    {
+      int[] assignment = compactAssignment(sdted,
+          ArrayTree.truncate(trees1, i), ArrayTree.truncate(trees2, i));
+      distances[i - 1] = computeCostOfEditPath(g1, g2, vertices1, vertices2,
+          assignment);
+    }
+    return distances;
+  }
+
+  /**
+   * @param g
+   * @param iterations
+   * @param vertices
+   *          the vertex of g belonging to each tree is added, in the order of
+   *          the trees
+   * @return the compact neighborhood trees of g after the given number of
+   *         iterations
+   */
+  protected <V extends Vertex, E extends Edge> List<ArrayTree> compactTrees(
+      AbstractGraph<V, E> g, int iterations, List<V> vertices)
+  {
+    return NeighborhoodTreeIndex.trees(getTreeType(), g, iterations,
+        vertices);
+  }
+
+  /**
+   * @param graphs
+   * @return the trees of all graphs for this distance, see
+   *         {@link #computeGraphDistance(Trees, Trees)}
+   */
+  public <V extends Vertex, E extends Edge> NeighborhoodTreeIndex<V, E> buildIndex(
+      List<? extends AbstractGraph<V, E>> graphs)
+  {
+    return new NeighborhoodTreeIndex<V, E>(graphs, getTreeType(),
+        getIterations());
+  }
+
+  /**
+   * Computes the distance of two graphs from their precomputed trees, so the
+   * trees of a graph are built only once for all pairs. As for
+   * {@link #setCompactTrees(boolean)} this requires the uniform label cost
+   * model. Trees with more iterations are truncated, so one index can be used
+   * for the distances of several iteration counts.
+   *
+   * @param trees1
+   * @param trees2
+   * @return the distance between the graphs of trees1 and trees2
+   */
+  public <V extends Vertex, E extends Edge> double computeGraphDistance(
+      Trees<V, E> trees1, Trees<V, E> trees2)
+  {
+    checkTrees(trees1);
+    checkTrees(trees2);
+    int iterations = getIterations();
+    List<ArrayTree> compact1 = iterations < 0 ? trees1.getTrees()
+        : ArrayTree.truncate(trees1.getTrees(), iterations);
+    List<ArrayTree> compact2 = iterations < 0 ? trees2.getTrees()
+        : ArrayTree.truncate(trees2.getTrees(), iterations);
+
+    int[] assignment = compactAssignment(compactSDTED(), compact1, compact2);
+    return computeCostOfEditPath(trees1.getGraph(), trees2.getGraph(),
+        trees1.getVertices(), trees2.getVertices(), assignment);
+  }
+
+  private void checkTrees(Trees<?, ?> trees)
+  {
+    // fully refined trees contain the trees of every iteration count
+    if (trees.getType() != getTreeType() || trees.getIterations() >= 0
+        && (getIterations() < 0 || trees.getIterations() < getIterations()))
+      throw new IllegalArgumentException(
+          "The trees do not match the distance " + getID() + "!");
+  }
+
+  /**
+   * @return the kind of neighborhood trees the distance is based on
+   */
+  protected abstract NeighborhoodTreeIndex.Type getTreeType();
+
+  /**
+   * @return number of refinement steps, <0: fully refine
+   */
+  public abstract int getIterations();
 }
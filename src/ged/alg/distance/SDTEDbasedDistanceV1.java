@@ -7,6 +7,8 @@ import org.jgrapht.graph.AbstractGraph;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
+import ged.alg.graphencoder.tree.LazyNeighborhoodTreesV1;
+import ged.alg.graphencoder.tree.NeighborhoodTreeIndex;
 import ged.alg.graphencoder.tree.NeighborhoodTreeV1;
 import ged.structures.graph.Edge;
 import ged.structures.graph.Vertex;
@@ -15,6 +17,7 @@ import ged.structures.tree.CTree;
 public class SDTEDbasedDistanceV1 extends SDTEDbasedDistance
 {
   private final int iterations;
+  private boolean lazyTrees = false;
 
   public SDTEDbasedDistanceV1(int i)
   {
@@ -34,6 +37,17 @@ public class SDTEDbasedDistanceV1 extends SDTEDbasedDistance
     this.iterations = -1;
   }
 
+  /**
+   * @param lazyTrees
+   *          if true the SDTED walks lazy views of the graphs instead of
+   *          building the trees, see {@link LazyNeighborhoodTreesV1}. As for
+   *          compact trees this requires the uniform label cost model.
+   */
+  public void setLazyTrees(boolean lazyTrees)
+  {
+    this.lazyTrees = lazyTrees;
+  }
+
   /**
    * @param g1
    * @param g2
@@ -43,6 +57,18 @@ public class SDTEDbasedDistanceV1 extends SDTEDbasedDistance
   public <V extends Vertex, E extends Edge> double computeGraphDistance(
       AbstractGraph<V, E> g1, AbstractGraph<V, E> g2)
   {
+    if (lazyTrees)
+    {
+      LazyNeighborhoodTreesV1<V, E> lazy1 = new LazyNeighborhoodTreesV1<V, E>(
+          g1, iterations);
+      LazyNeighborhoodTreesV1<V, E> lazy2 = new LazyNeighborhoodTreesV1<V, E>(
+          g2, iterations);
+      return computeCostOfEditPath(g1, g2, lazy1.getVertices(),
+          lazy2.getVertices(),
+          compactAssignment(lazy1.getTrees(), lazy2.getTrees()));
+    }
+
+    if (usesCompactTrees()) return computeCompactGraphDistance(g1, g2);
 
     List<CTree<V, Edge>> trees1 = //
         new NeighborhoodTreeV1<V, E>(g1, iterations)//
@@ -64,11 +90,24 @@ public class SDTEDbasedDistanceV1 extends SDTEDbasedDistance
 
   }
 
+  @Override
+  protected NeighborhoodTreeIndex.Type getTreeType()
+  {
+    return NeighborhoodTreeIndex.Type.V1;
+  }
+
+  @Override
+  public int getIterations()
+  {
+    return iterations;
+  }
+
   @Override
   public String getID()
   {
     return "SDTEDbasedDistanceV1_" + this.iterations + "_"
-        + this.layerWeightFactor;
+        + this.layerWeightFactor + getAssignmentSolverSuffix()
+        + getBoundedAssignmentSuffix();
   }
 
 }
@@ -7,6 +7,7 @@ import org.jgrapht.graph.AbstractGraph;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
+import ged.alg.graphencoder.tree.NeighborhoodTreeIndex;
 import ged.alg.graphencoder.tree.NeighborhoodTreeV2;
 import ged.structures.graph.Edge;
 import ged.structures.graph.Vertex;
@@ -26,6 +27,8 @@ public class SDTEDbasedDistanceV2 extends SDTEDbasedDistance
   public <V extends Vertex, E extends Edge> double computeGraphDistance(
       AbstractGraph<V, E> g1, AbstractGraph<V, E> g2)
   {
+    if (usesCompactTrees()) return computeCompactGraphDistance(g1, g2);
+
     List<CTree<VertexWrapper<V>, Edge>> trees1 = //
         new NeighborhoodTreeV2<V, E>(g1, iterations)//
         .getCurrentTreeRepresentations();
@@ -63,11 +66,24 @@ public class SDTEDbasedDistanceV2 extends SDTEDbasedDistance
     this.iterations = i;
   }
 
+  @Override
+  protected NeighborhoodTreeIndex.Type getTreeType()
+  {
+    return NeighborhoodTreeIndex.Type.V2;
+  }
+
+  @Override
+  public int getIterations()
+  {
+    return iterations;
+  }
+
   @Override
   public String getID()
   {
     return "SDTEDbasedDistanceV2_" + this.iterations + "_"
-        + this.layerWeightFactor;
+        + this.layerWeightFactor + getAssignmentSolverSuffix()
+        + getBoundedAssignmentSuffix();
   }
 
 }
@@ -7,6 +7,7 @@ import org.jgrapht.graph.AbstractGraph;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 
+import ged.alg.graphencoder.tree.NeighborhoodTreeIndex;
 import ged.alg.graphencoder.tree.NeighborhoodTreeWL;
 import ged.structures.graph.Edge;
 import ged.structures.graph.Vertex;
@@ -38,6 +39,8 @@ public class SDTEDbasedDistanceWL extends SDTEDbasedDistance
   public <V extends Vertex, E extends Edge> double computeGraphDistance(
       AbstractGraph<V, E> g1, AbstractGraph<V, E> g2)
   {
+    if (usesCompactTrees()) return computeCompactGraphDistance(g1, g2);
+
     List<CTree<VertexWrapper<V>, Edge>> trees1 = //
         new NeighborhoodTreeWL<V, E>(g1, iterations)//
         .getCurrentTreeRepresentations();
@@ -57,10 +60,23 @@ public class SDTEDbasedDistanceWL extends SDTEDbasedDistance
         assignment(trees1, trees2, this.layerWeightFactor));
   }
 
+  @Override
+  protected NeighborhoodTreeIndex.Type getTreeType()
+  {
+    return NeighborhoodTreeIndex.Type.WL;
+  }
+
+  @Override
+  public int getIterations()
+  {
+    return iterations;
+  }
+
   @Override
   public String getID()
   {
     return "SDTEDbasedDistanceWL_" + this.iterations + "_"
-        + this.layerWeightFactor;
+        + this.layerWeightFactor + getAssignmentSolverSuffix()
+        + getBoundedAssignmentSuffix();
   }
 }
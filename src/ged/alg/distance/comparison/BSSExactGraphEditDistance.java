@@ -1,13 +1,23 @@
 package ged.alg.distance.comparison;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 
 import org.jgrapht.alg.util.Pair;
 import org.jgrapht.graph.AbstractGraph;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import ac.bss_ged.BSEditDistanceJNI;
 import ged.alg.distance.GraphDistance;
 import ged.structures.graph.Edge;
@@ -23,6 +33,35 @@ public class BSSExactGraphEditDistance extends GraphDistance
     return "BSSEXACTGED";
   }
   int width;
+  // the native code is stateless, so one instance is shared by all threads
+  private static final BSEditDistanceJNI bsed = new BSEditDistanceJNI();
+  // label ids of all graphs, renumbered per pair like before
+  private final ConcurrentHashMap<String, Integer> vertexLabels = new ConcurrentHashMap<String, Integer>();
+  private final ConcurrentHashMap<String, Integer> edgeLabels = new ConcurrentHashMap<String, Integer>();
+  private final Cache<AbstractGraph<?, ?>, EncodedGraph> encoded = CacheBuilder
+      .newBuilder().weakKeys().build();
+
+  /**
+   * Vertex labels and edges (source, target, label) of a graph as passed to
+   * {@link BSEditDistanceJNI}, the vertices are numbered in DFS order.
+   */
+  private static final class EncodedGraph
+  {
+    private final int[] vertices;
+    private final int[][] edges;
+    // distinct labels in the order of the vertex and edge set
+    private final int[] vertexLabelOrder;
+    private final int[] edgeLabelOrder;
+
+    private EncodedGraph(int[] vertices, int[][] edges, int[] vertexLabelOrder,
+        int[] edgeLabelOrder)
+    {
+      this.vertices = vertices;
+      this.edges = edges;
+      this.vertexLabelOrder = vertexLabelOrder;
+      this.edgeLabelOrder = edgeLabelOrder;
+    }
+  }
 
   /**
    * @param width
@@ -43,132 +82,169 @@ public class BSSExactGraphEditDistance extends GraphDistance
   public <V extends Vertex, E extends Edge> double compute(
       AbstractGraph<V, E> q, AbstractGraph<V, E> g, double bound)
   {
+    return compute(encode(g), encode(q), bound);
+  }
 
+  /**
+   * Computes the distances of many pairs, every graph is converted to the
+   * arrays of the native code only once.
+   *
+   * @param graphs
+   * @param pairs
+   *          indices of the graphs to compare, as g1 and g2 of
+   *          {@link #computeGraphDistance(AbstractGraph, AbstractGraph)}
+   * @return the distance of every pair
+   */
+  public <V extends Vertex, E extends Edge> double[] computeGraphDistances(
+      List<? extends AbstractGraph<V, E>> graphs,
+      List<Pair<Integer, Integer>> pairs)
+  {
+    List<EncodedGraph> encodedGraphs = new ArrayList<EncodedGraph>(
+        graphs.size());
+    for (AbstractGraph<V, E> g : graphs)
+      encodedGraphs.add(encode(g));
+    double[] distances = new double[pairs.size()];
+    for (int p = 0; p < pairs.size(); p++)
+    {
+      EncodedGraph g1 = encodedGraphs.get(pairs.get(p).getFirst());
+      EncodedGraph g2 = encodedGraphs.get(pairs.get(p).getSecond());
+      distances[p] = compute(g2, g1, Double.MAX_VALUE);
+    }
+    return distances;
+  }
+
+  private double compute(EncodedGraph Q, EncodedGraph G, double bound)
+  {
     // floor is allowed due to the uniform cost-model
     int intBound = (int) bound;
-    int ub = Math.max(q.vertexSet().size(), g.vertexSet().size())
-        + q.edgeSet().size() + g.edgeSet().size();
+    int ub = Math.max(Q.vertices.length, G.vertices.length) + Q.edges.length
+        + G.edges.length;
     intBound = Math.min(intBound, ub);
 
-    // convert to integer labels
-    // TODO: how to best do that... if there are no labels..
-    V vtest = null;
-    E etest = null;
-    if (!g.vertexSet().isEmpty())
-    {
-      vtest = g.vertexSet().iterator().next();
-    }
-    else if (!q.vertexSet().isEmpty())
-    {
-      vtest = q.vertexSet().iterator().next();
-    }
-
-    if (!g.edgeSet().isEmpty())
-    {
-      etest = g.edgeSet().iterator().next();
-    }
-    else if (!q.edgeSet().isEmpty())
-    {
-      etest = q.edgeSet().iterator().next();
-    }
-    if (vtest == null)
-    {
-      System.err.println("No vertices in graphs");
-    }
-    if (etest == null)
-    {
-      System.err.println("No edges in graphs");
-    }
+    // the labels are numbered in the order they occur in Q and G
+    int[] vertexMap = labelMap(Q.vertexLabelOrder, G.vertexLabelOrder);
+    int[] edgeMap = labelMap(Q.edgeLabelOrder, G.edgeLabelOrder);
+    int result = bsed.getEditDistance(width, relabel(Q.vertices, vertexMap),
+        relabel(Q.edges, edgeMap), relabel(G.vertices, vertexMap),
+        relabel(G.edges, edgeMap), intBound);
+    return result;
+  }
 
-    HashMap<V, Integer> va = new HashMap<V, Integer>();
-    HashMap<E, Integer> ea = new HashMap<E, Integer>();
-    if (vtest instanceof LabeledVertex)
+  /**
+   * @return the consecutive ids of the labels in the order of first and second
+   *         or null if they already are
+   */
+  private static int[] labelMap(int[] first, int[] second)
+  {
+    int max = -1;
+    for (int l : first)
+      max = Math.max(max, l);
+    for (int l : second)
+      max = Math.max(max, l);
+    int[] map = new int[max + 1];
+    Arrays.fill(map, -1);
+    int nextkey = 0;
+    boolean identity = true;
+    for (int l : first)
     {
-      HashMap<String, Integer> labelMap = new HashMap<String, Integer>();
-      int nextkey = 0;
-      for (V v : g.vertexSet())
-      {
-        if (!labelMap.containsKey(v.toString()))
-        {
-          labelMap.put(v.toString(), nextkey);
-          nextkey++;
-        }
-        va.put(v, labelMap.get(v.toString()));
-      }
-      for (V v : q.vertexSet())
+      if (map[l] < 0)
       {
-        if (!labelMap.containsKey(v.toString()))
-        {
-          labelMap.put(v.toString(), nextkey);
-          nextkey++;
-        }
-        va.put(v, labelMap.get(v.toString()));
+        identity &= l == nextkey;
+        map[l] = nextkey++;
       }
     }
-    else
+    for (int l : second)
     {
-      for (V v : g.vertexSet()) // no labels = uniform labels
-      {
-        va.put(v, 0);
-      }
-      for (V v : q.vertexSet()) // no labels = uniform labels
+      if (map[l] < 0)
       {
-        va.put(v, 0);
+        identity &= l == nextkey;
+        map[l] = nextkey++;
       }
     }
-    if (etest instanceof LabeledEdge)
+    return identity ? null : map;
+  }
+
+  private static int[] relabel(int[] vertices, int[] map)
+  {
+    if (map == null) return vertices;
+    int[] relabeled = new int[vertices.length];
+    for (int i = 0; i < vertices.length; i++)
+      relabeled[i] = map[vertices[i]];
+    return relabeled;
+  }
+
+  private static int[][] relabel(int[][] edges, int[] map)
+  {
+    if (map == null) return edges;
+    int[][] relabeled = new int[edges.length][];
+    for (int i = 0; i < edges.length; i++)
+      relabeled[i] = new int[] { edges[i][0], edges[i][1], map[edges[i][2]] };
+    return relabeled;
+  }
+
+  /**
+   * @return the arrays of the native code for g with instance-wide label ids,
+   *         computed once per graph
+   */
+  @SuppressWarnings("unchecked")
+  private <V extends Vertex, E extends Edge> EncodedGraph encode(
+      AbstractGraph<V, E> g)
+  {
+    try
     {
-      HashMap<String, Integer> labelMap = new HashMap<String, Integer>();
-      int nextkey = 0;
-      for (E e : g.edgeSet())
-      {
-        if (!labelMap.containsKey(e.toString()))
-        {
-          labelMap.put(e.toString(), nextkey);
-          nextkey++;
-        }
-        ea.put(e, labelMap.get(e.toString()));
-      }
-      for (E e : q.edgeSet())
-      {
-        if (!labelMap.containsKey(e.toString()))
-        {
-          labelMap.put(e.toString(), nextkey);
-          nextkey++;
-        }
-        ea.put(e, labelMap.get(e.toString()));
-      }
+      return encoded.get(g, () -> {
+        // no labels = uniform labels
+        Function<Object, Integer> vertexLabel = v -> 0;
+        Function<Object, Integer> edgeLabel = e -> 0;
+        if (!g.vertexSet().isEmpty()
+            && g.vertexSet().iterator().next() instanceof LabeledVertex)
+          vertexLabel = v -> labelId(vertexLabels, v.toString());
+        if (!g.edgeSet().isEmpty()
+            && g.edgeSet().iterator().next() instanceof LabeledEdge)
+          edgeLabel = e -> labelId(edgeLabels, e.toString());
+        Pair<int[], int[][]> primitive = graphToPrimitiveDFS(g,
+            (Function<V, Integer>) (Function<?, Integer>) vertexLabel,
+            (Function<E, Integer>) (Function<?, Integer>) edgeLabel);
+        return new EncodedGraph(primitive.getFirst(), primitive.getSecond(),
+            labelOrder(g.vertexSet(), vertexLabel),
+            labelOrder(g.edgeSet(), edgeLabel));
+      });
     }
-    else
+    catch (ExecutionException e)
     {
-      for (E e : g.edgeSet()) // no labels = uniform labels
-      {
-        ea.put(e, 0);
-      }
-      for (E e : q.edgeSet()) // no labels = uniform labels
-      {
-        ea.put(e, 0);
-      }
+      throw new IllegalStateException(e.getCause());
     }
-
-    Pair<int[], int[][]> Q = graphToPrimitiveDFS(g, va, ea);
-    Pair<int[], int[][]> G = graphToPrimitiveDFS(q, va, ea);
-
-    return compute(Q, G, intBound);
   }
 
-  private double compute(Pair<int[], int[][]> Q, Pair<int[], int[][]> G,
-      int bound)
+  /**
+   * @return the distinct labels in the order of their first occurrence
+   */
+  private static int[] labelOrder(Set<?> elements,
+      Function<Object, Integer> label)
   {
-
-    BSEditDistanceJNI bsed = new BSEditDistanceJNI();
-    int result = bsed.getEditDistance(width, Q.getFirst(), Q.getSecond(),
-        G.getFirst(), G.getSecond(), bound);
+    LinkedHashSet<Integer> order = new LinkedHashSet<Integer>();
+    for (Object o : elements)
+      order.add(label.apply(o));
+    int[] result = new int[order.size()];
+    int i = 0;
+    for (int l : order)
+      result[i++] = l;
     return result;
   }
 
+  private static int labelId(ConcurrentHashMap<String, Integer> labels,
+      String label)
+  {
+    Integer id = labels.get(label);
+    if (id != null) return id;
+    synchronized (labels)
+    {
+      return labels.computeIfAbsent(label, l -> labels.size());
+    }
+  }
+
   private <V extends Vertex, E extends Edge> Pair<int[], int[][]> graphToPrimitiveDFS(
-      AbstractGraph<V, E> g, HashMap<V, Integer> va, HashMap<E, Integer> ea)
+      AbstractGraph<V, E> g, Function<V, Integer> va, Function<E, Integer> ea)
   {
 
     HashMap<V, Integer> rank = new HashMap<V, Integer>();
@@ -197,7 +273,7 @@ public class BSSExactGraphEditDistance extends GraphDistance
 
     for (V v : sortedbyDegree)
     {
-      vertices[rank.get(v)] = va.get(v);
+      vertices[rank.get(v)] = va.apply(v);
     }
     int edgeIndex = 0;
     for (E e : g.edgeSet())
@@ -205,7 +281,7 @@ public class BSSExactGraphEditDistance extends GraphDistance
 
       int iU = rank.get(g.getEdgeSource(e));
       int iV = rank.get(g.getEdgeTarget(e));
-      int l = ea.get(e);
+      int l = ea.apply(e);
       edges[edgeIndex] = new int[] { iU, iV, l};
       edgeIndex++;
     }
@@ -4,7 +4,7 @@ package ged.alg.distance.comparison;
 import org.jgrapht.graph.AbstractGraph;
 
 import ged.alg.distance.GraphDistance;
-import ged.alg.distance.comparison.beamsearch.BeamSearch;
+import ged.alg.distance.comparison.beamsearch.IndexedBeamSearch;
 import ged.structures.graph.Edge;
 import ged.structures.graph.Vertex;
 
@@ -16,11 +16,19 @@ public class BeamSearchDistance<V extends Vertex, E extends Edge> extends GraphD
     return "BeamSearch_"+s;
   }
   private int s;
-  private BeamSearch search;
+  private IndexedBeamSearch search;
   public BeamSearchDistance(int s)
   {
 	  this.s = s;
-	  this.search = new BeamSearch<V,E>(s);
+	  this.search = new IndexedBeamSearch(s);
+  }
+
+  /**
+   * @return the search used for the edit distances, e.g. to set a deadline
+   */
+  public IndexedBeamSearch getBeamSearch()
+  {
+    return search;
   }
 
   @Override
@@ -16,7 +16,7 @@ public class BipartiteGraphMatching extends GraphDistance
   @Override
   public String getID()
   {
-    return "BipartiteGraphMatching";
+    return "BipartiteGraphMatching" + getAssignmentSolverSuffix();
   }
 
   @Override
@@ -31,7 +31,7 @@ public class BipartiteGraphMatching extends GraphDistance
         false);
 
     return computeCostOfEditPath(g1, g2, vertices1, vertices2,
-        assignment(costMatrix));
+        getAssignmentSolver().assignment(costMatrix));
   }
 
   public static <V extends Vertex, E extends Edge> double computeBranchLowerBound(
@@ -206,9 +206,4 @@ public class BipartiteGraphMatching extends GraphDistance
     return HungarianAlgorithm.assignmentCost(C);
   }
 
-  private static final int[] assignment(double[][] C)
-  {
-    return HungarianAlgorithm.assignment(C);
-  }
-
 }
@@ -17,7 +17,7 @@ public class BipartiteGraphMatchingFast extends GraphDistance
   @Override
   public String getID()
   {
-    return "BipartiteGraphMatchingFast";
+    return "BipartiteGraphMatchingFast" + getAssignmentSolverSuffix();
   }
 
   @Override
@@ -32,7 +32,7 @@ public class BipartiteGraphMatchingFast extends GraphDistance
         false);
 
     return computeCostOfEditPath(g1, g2, vertices1, vertices2,
-        assignment(costMatrix));
+        getAssignmentSolver().assignment(costMatrix));
   }
 
   public static <V extends Vertex, E extends Edge> double computeBranchLowerBound(
@@ -0,0 +1,100 @@
+package ged.alg.distance.comparison;
+
+import java.util.concurrent.RecursiveAction;
+
+import ged.ForkJoinPools;
+
+/**
+ * Fills the substitution block of a cost matrix, whose cells can be computed
+ * independently, e.g. by a beam search per vertex pair. With a parallelism
+ * larger than 1 the rows are split into tiles that are filled in a fork-join
+ * pool, so a single large graph pair uses all cores.
+ */
+public class CostMatrixBuilder
+{
+  /**
+   * Cost of a single cell, has to be thread-safe if the parallelism is larger
+   * than 1.
+   */
+  public interface CellCost
+  {
+    double cost(int i, int j);
+  }
+
+  private final int parallelism;
+
+  /**
+   * @param parallelism
+   *          number of threads, 1 fills the matrix sequentially
+   */
+  public CostMatrixBuilder(int parallelism)
+  {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("The parallelism must be positive!");
+    this.parallelism = parallelism;
+  }
+
+  public int getParallelism()
+  {
+    return parallelism;
+  }
+
+  /**
+   * @param matrix
+   *          n x m matrix, every cell is overwritten
+   * @param cost
+   */
+  public void fill(double[][] matrix, CellCost cost)
+  {
+    if (parallelism == 1 || matrix.length < 2)
+    {
+      fillRows(matrix, cost, 0, matrix.length);
+      return;
+    }
+    ForkJoinPools.get(parallelism)
+        .invoke(new RowTile(matrix, cost, 0, matrix.length));
+  }
+
+  private static void fillRows(double[][] matrix, CellCost cost, int from,
+      int to)
+  {
+    for (int i = from; i < to; i++)
+      for (int j = 0; j < matrix[i].length; j++)
+        matrix[i][j] = cost.cost(i, j);
+  }
+
+  /**
+   * Rows from to to - 1, split in halves down to single rows since a cell may
+   * take long.
+   */
+  private static final class RowTile extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+
+    private final double[][] matrix;
+    private final CellCost cost;
+    private final int from;
+    private final int to;
+
+    private RowTile(double[][] matrix, CellCost cost, int from, int to)
+    {
+      this.matrix = matrix;
+      this.cost = cost;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute()
+    {
+      if (to - from == 1)
+      {
+        fillRows(matrix, cost, from, to);
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new RowTile(matrix, cost, from, middle),
+          new RowTile(matrix, cost, middle, to));
+    }
+  }
+}
@@ -1,19 +1,20 @@
 package ged.alg.distance.comparison;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.jgrapht.graph.AbstractGraph;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 
-import ged.alg.assignment.HungarianAlgorithm;
 import ged.alg.distance.GraphDistance;
-import ged.alg.distance.comparison.beamsearch.BeamSearch;
+import ged.alg.distance.comparison.beamsearch.IndexedBeamSearch;
+import ged.alg.distance.comparison.graphlets.GraphletCache;
+import ged.alg.distance.comparison.graphlets.GraphletCache.Graphlet;
 import ged.structures.graph.Edge;
-import ged.structures.graph.LabeledEdge;
-import ged.structures.graph.PGraph;
 import ged.structures.graph.Vertex;
 
 public class SubgraphMatching extends GraphDistance
@@ -21,14 +22,92 @@ public class SubgraphMatching extends GraphDistance
   @Override
   public String getID()
   {
-    return "SubgraphMatching_"+k;
+    String width = beam.getBeamWidth() == Integer.MAX_VALUE ? ""
+        : "_" + beam.getBeamWidth();
+    return "SubgraphMatching_" + k + width + getAssignmentSolverSuffix();
   }
+  /** maximum number of graphlet pairs whose distance is kept */
+  private static final int CACHE_SIZE = 1 << 20;
   private int k;
-  private BeamSearch beam;
+  private IndexedBeamSearch beam;
+  private GraphletCache graphlets;
+  private CostMatrixBuilder costMatrix = new CostMatrixBuilder(1);
+  private Cache<Long, Double> sharedCache = null;
+  /**
+   * The search between the graphlets of two vertices is not limited, as the
+   * search of {@link ged.alg.distance.comparison.beamsearch.BeamSearch}
+   * starting from a vertex pair ignored the beam width.
+   *
+   * @param k
+   *          radius of the graphlets
+   */
   public SubgraphMatching(int k)
+  {
+	  this(k, Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param k
+   *          radius of the graphlets
+   * @param beamWidth
+   *          maximum number of open edit paths between two graphlets
+   */
+  public SubgraphMatching(int k, int beamWidth)
   {
 	  this.k = k;
-	  this.beam = new BeamSearch(1000);
+	  this.beam = new IndexedBeamSearch(beamWidth);
+	  this.graphlets = new GraphletCache(k);
+  }
+
+  /**
+   * @param parallelism
+   *          number of threads computing the substitution costs of a graph
+   *          pair, 1 (default) computes them sequentially
+   */
+  public void setParallelism(int parallelism)
+  {
+    this.costMatrix = new CostMatrixBuilder(parallelism);
+  }
+
+  public int getParallelism()
+  {
+    return costMatrix.getParallelism();
+  }
+
+  /**
+   * @param sharedCache
+   *          if true the distances of graphlet pairs are kept across calls of
+   *          computeGraphDistance, e.g. for all pairs of a dataset, until
+   *          {@link #clearSharedCache()}. false (default) compares equal
+   *          graphlet pairs only once per graph pair.
+   */
+  public void setSharedCache(boolean sharedCache)
+  {
+    this.sharedCache = sharedCache
+        ? CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build()
+        : null;
+  }
+
+  public boolean hasSharedCache()
+  {
+    return sharedCache != null;
+  }
+
+  /**
+   * Removes all distances from the shared cache, e.g. before measuring the
+   * runtime.
+   */
+  public void clearSharedCache()
+  {
+    if (sharedCache != null) sharedCache.invalidateAll();
+  }
+
+  /**
+   * @return the search used for the edit distances, e.g. to set a deadline
+   */
+  public IndexedBeamSearch getBeamSearch()
+  {
+    return beam;
   }
 
   @Override
@@ -39,149 +118,75 @@ public class SubgraphMatching extends GraphDistance
     List<V> vertices1 = Lists.newArrayList(g1.vertexSet());
     List<V> vertices2 = Lists.newArrayList(g2.vertexSet());
 
-    double[][] costMatrix = computeCostMatrix(g1, vertices1, g2, vertices2,
-        this.k);
+    int n = vertices1.size();
+    int m = vertices2.size();
+    double[][] substitution = new double[n][m];
+    double[] deletion = new double[n];
+    double[] insertion = new double[m];
+    computeCosts(g1, vertices1, g2, vertices2, substitution, deletion,
+        insertion);
 
     return computeCostOfEditPath(g1, g2, vertices1, vertices2,
-        assignment(costMatrix));
+        getAssignmentSolver().riesenBunkeAssignment(substitution, deletion,
+            insertion));
   }
 
 
-  private <V extends Vertex, E extends Edge> double[][] computeCostMatrix(
+  /**
+   * Computes the blocks of the Riesen-Bunke cost matrix, see
+   * {@link ged.alg.assignment.AssignmentSolver#riesenBunkeAssignment(double[][], double[], double[])}
+   */
+  private <V extends Vertex, E extends Edge> void computeCosts(
       AbstractGraph<V, E> g1, List<V> vertices1, AbstractGraph<V, E> g2,
-      List<V> vertices2, int k)
+      List<V> vertices2, double[][] substitution, double[] deletion,
+      double[] insertion)
   {
-    int n = g1.vertexSet().size();
-    int m = g2.vertexSet().size();
-
-    double[][] C = new double[n + m][n + m];
-
-    HashMap<V,AbstractGraph<V, E>> graphlets = getGraphlets(g1,vertices1,g2,vertices2);
-    // vertex matching (upper left corner)
-    for (int i = 0; i < n; i++)
-    {
-      for (int j = 0; j < m; j++)
-      {
-        V v1 = vertices1.get(i);
-        V v2 = vertices2.get(j);
-        C[i][j] = vertexSubstitution(v1, g1, graphlets.get(v1), v2, g2, graphlets.get(v2));
-      }
-    }
-
-    // vertex insertion (lower left corner)
-    for (int i = n; i < n + m; i++)
-    {
-      for (int j = 0; j < m; j++)
-      {
-        C[i][j] = Double.POSITIVE_INFINITY;
-      }
-    }
+    int n = vertices1.size();
+    int m = vertices2.size();
+
+    // in the order of the vertex sets like vertices1 and vertices2
+    List<Graphlet<V, E>> graphlets1 = graphlets.getGraphlets(g1);
+    List<Graphlet<V, E>> graphlets2 = graphlets.getGraphlets(g2);
+    // vertex matching, the beam search keeps its state per call
+    ConcurrentMap<Long, Double> distances = sharedCache == null
+        ? new ConcurrentHashMap<Long, Double>()
+        : sharedCache.asMap();
+    costMatrix.fill(substitution, (i, j) -> graphletDistance(distances,
+        graphlets1.get(i), graphlets2.get(j)));
+
+    // vertex insertion
     for (int j = 0; j < m; j++)
     {
-      V v2 = vertices2.get(j);
-      C[n + j][j] = vertexInsertionDeletion(graphlets.get(v2));
+      insertion[j] = graphlets2.get(j).getDeletionCost();
     }
 
-    // vertex deletion (upper right corner)
-    for (int i = 0; i < n; i++)
-    {
-      for (int j = m; j < n + m; j++)
-      {
-        C[i][j] = Double.POSITIVE_INFINITY;
-      }
-    }
+    // vertex deletion
     for (int i = 0; i < n; i++)
     {
-      V v1 = vertices1.get(i);
-      C[i][m + i] = vertexInsertionDeletion(graphlets.get(v1));
-    }
-
-    // zero fill-in (lower right corner)
-    for (int i = n; i < n + m; i++)
-    {
-      for (int j = m; j < n + m; j++)
-      {
-        C[i][j] = 0;
-      }
+      deletion[i] = graphlets1.get(i).getDeletionCost();
     }
-
-    return C;
   }
 
-  private <V extends Vertex, E extends Edge> HashMap<V, AbstractGraph<V, E>> getGraphlets(AbstractGraph<V, E> g1, List<V> vertices1,
-		AbstractGraph<V, E> g2, List<V> vertices2) {
-	  HashMap<V,AbstractGraph<V, E>> graphlets = new HashMap<V,AbstractGraph<V, E>>();
-	  for(V v1: vertices1)
-	  {
-		  graphlets.put(v1,computeGraphlet(g1,v1));
-	  }
-	  for(V v2: vertices2)
-	  {
-		  graphlets.put(v2,computeGraphlet(g2,v2));
-	  }
-	  return graphlets;
-}
-
-private <V extends Vertex, E extends Edge> AbstractGraph<V, E> computeGraphlet(AbstractGraph<V, E> g1, V v1) {
-	PGraph<V, E> graphlet = new PGraph<V, E>((Class<? extends E>) LabeledEdge.class);
-	HashSet<V> verticesAtK = new HashSet<V>();
-	graphlet.addVertex(v1);
-	verticesAtK.add(v1);
-	for(int i=0; i<this.k; i++)
-	{
-		HashSet<V> verticesAtKplus = new HashSet<V>();
-		for(V v: verticesAtK)
-		{
-			for(E e: g1.edgesOf(v))
-			{
-				V u = g1.getEdgeSource(e);
-				if(u.equals(v))
-				{
-					u = g1.getEdgeTarget(e);
-				}
-				if(!graphlet.containsVertex(u))
-				{
-					graphlet.addVertex(u);
-					verticesAtKplus.add(u);
-				}
-				if(!graphlet.containsEdge(e))
-				{
-					graphlet.addEdge(v, u, e);
-				}
-			}
-		}
-		verticesAtK = verticesAtKplus;
-	}
-			
-	return (AbstractGraph<V, E>) graphlet;
-}
-
-private <V extends Vertex, E extends Edge> double vertexInsertionDeletion(AbstractGraph<V, E> g)
+  /**
+   * Equal graphlet pairs, e.g. of the carbon rings of molecules, are only
+   * compared once per graph pair, or once for all graphs with the shared
+   * cache. Upper bounds of expired searches are not kept, so they do not
+   * outlive the deadline.
+   */
+  private <V extends Vertex, E extends Edge> double graphletDistance(
+      ConcurrentMap<Long, Double> distances, Graphlet<V, E> h1,
+      Graphlet<V, E> h2)
   {
-    double rV = 0;
-    double rE = 0;
-    for(V v : g.vertexSet())
+    long pair = (long) h1.getId() << 32 | h2.getId();
+    Double distance = distances.get(pair);
+    if (distance == null)
     {
-    	rV += v.getDeletionCost();
+      IndexedBeamSearch.Result result = beam.search(h1.getGraph(),
+          h2.getGraph(), 0, 0);
+      distance = result.getDistance();
+      if (!result.isExpired()) distances.put(pair, distance);
     }
-    // add costs for all edge deletions
-    for (E e : g.edgeSet())
-    {
-      rE += e.getDeletionCost();
-    }
-
-    return rV + rE;
-  }
-
-  private <V extends Vertex, E extends Edge> double vertexSubstitution(
-      V v1, AbstractGraph<V, E> g1, AbstractGraph<V, E> graphlet1, V v2, AbstractGraph<V, E> g2,AbstractGraph<V, E> graphlet2)
-  {
-    return this.beam.getEditDistance(graphlet1, graphlet2,v1,v2);
-  }
-
-  private static final int[] assignment(double[][] C)
-  {
-    return HungarianAlgorithm.assignment(C);
+    return distance;
   }
 
 }
@@ -6,7 +6,6 @@ import org.jgrapht.graph.AbstractGraph;
 
 import com.google.common.collect.Lists;
 
-import ged.alg.assignment.HungarianAlgorithm;
 import ged.alg.distance.GraphDistance;
 import ged.alg.distance.comparison.walks.WalkHistograms;
 import ged.structures.graph.Edge;
@@ -17,14 +16,30 @@ public class WalksMatching extends GraphDistance
   @Override
   public String getID()
   {
-    return "WalksMatching_"+k;
+    return "WalksMatching_" + k + getAssignmentSolverSuffix();
   }
   private int k;
+  private CostMatrixBuilder costMatrix = new CostMatrixBuilder(1);
   public WalksMatching(int k)
   {
 	  this.k = k;
   }
 
+  /**
+   * @param parallelism
+   *          number of threads computing the substitution costs of a graph
+   *          pair, 1 (default) computes them sequentially
+   */
+  public void setParallelism(int parallelism)
+  {
+    this.costMatrix = new CostMatrixBuilder(parallelism);
+  }
+
+  public int getParallelism()
+  {
+    return costMatrix.getParallelism();
+  }
+
   @Override
   public <V extends Vertex, E extends Edge> double computeGraphDistance(
       AbstractGraph<V, E> g1, AbstractGraph<V, E> g2)
@@ -33,80 +48,49 @@ public class WalksMatching extends GraphDistance
     List<V> vertices1 = Lists.newArrayList(g1.vertexSet());
     List<V> vertices2 = Lists.newArrayList(g2.vertexSet());
 
-    double[][] costMatrix = computeCostMatrix(g1, vertices1, g2, vertices2,
-        this.k);
+    int n = vertices1.size();
+    int m = vertices2.size();
+    double[][] substitution = new double[n][m];
+    double[] deletion = new double[n];
+    double[] insertion = new double[m];
+    computeCosts(g1, vertices1, g2, vertices2, substitution, deletion,
+        insertion);
 
     return computeCostOfEditPath(g1, g2, vertices1, vertices2,
-        assignment(costMatrix));
+        getAssignmentSolver().riesenBunkeAssignment(substitution, deletion,
+            insertion));
   }
 
 
-  private <V extends Vertex, E extends Edge> double[][] computeCostMatrix(
+  /**
+   * Computes the blocks of the Riesen-Bunke cost matrix, see
+   * {@link ged.alg.assignment.AssignmentSolver#riesenBunkeAssignment(double[][], double[], double[])}
+   */
+  private <V extends Vertex, E extends Edge> void computeCosts(
       AbstractGraph<V, E> g1, List<V> vertices1, AbstractGraph<V, E> g2,
-      List<V> vertices2, int k)
+      List<V> vertices2, double[][] substitution, double[] deletion,
+      double[] insertion)
   {
-    int n = g1.vertexSet().size();
-    int m = g2.vertexSet().size();
-
-    double[][] C = new double[n + m][n + m];
+    int n = vertices1.size();
+    int m = vertices2.size();
 
     WalkHistograms<V,E> h = new WalkHistograms<V,E>(this.k,g1, vertices1, g2, vertices2);
     h.init();
-    // vertex matching (upper left corner)
-    for (int i = 0; i < n; i++)
-    {
-      for (int j = 0; j < m; j++)
-      {
-        V v1 = vertices1.get(i);
-        V v2 = vertices2.get(j);
-        C[i][j] = h.vertexSubstitution(v1, v2);
-      }
-    }
+    // vertex matching
+    costMatrix.fill(substitution,
+        (i, j) -> h.vertexSubstitution(vertices1.get(i), vertices2.get(j)));
 
-    // vertex insertion (lower left corner)
-    for (int i = n; i < n + m; i++)
-    {
-      for (int j = 0; j < m; j++)
-      {
-        C[i][j] = Double.POSITIVE_INFINITY;
-      }
-    }
+    // vertex insertion
     for (int j = 0; j < m; j++)
     {
-      V v2 = vertices2.get(j);
-      C[n + j][j] = h.vertexInsertionDeletion(v2);
+      insertion[j] = h.vertexInsertionDeletion(vertices2.get(j));
     }
 
-    // vertex deletion (upper right corner)
-    for (int i = 0; i < n; i++)
-    {
-      for (int j = m; j < n + m; j++)
-      {
-        C[i][j] = Double.POSITIVE_INFINITY;
-      }
-    }
+    // vertex deletion
     for (int i = 0; i < n; i++)
     {
-      V v1 = vertices1.get(i);
-      C[i][m + i] = h.vertexInsertionDeletion(v1);
+      deletion[i] = h.vertexInsertionDeletion(vertices1.get(i));
     }
-
-    // zero fill-in (lower right corner)
-    for (int i = n; i < n + m; i++)
-    {
-      for (int j = m; j < n + m; j++)
-      {
-        C[i][j] = 0;
-      }
-    }
-
-   // MathUtil.printMatrix(C);
-    return C;
-  }
-
-  private static final int[] assignment(double[][] C)
-  {
-    return HungarianAlgorithm.assignment(C);
   }
 
 }
@@ -8,6 +8,7 @@ import ged.structures.graph.Vertex;
 
 /**
  * Computes the graph edit distance (exact if space in open-list is unlimited, approximated if it is not).
+ * See {@link IndexedBeamSearch} for a faster anytime version returning the best edit path found on time out.
  * 
  * @author riesen
  * Source: https://github.com/dan-zam/graph-matching-toolkit
@@ -76,9 +77,7 @@ public class BeamSearch<V extends Vertex, E extends Edge> {
 			}		
 		}
 		// error case 
-		System.out.println("***ERROR CASE: Edit Distance is corrupt");
-		System.exit(0);
-		return -1;
+		throw new IllegalStateException("Edit Distance is corrupt, no complete edit path found!");
 	}
 	
 	/**
@@ -120,9 +119,7 @@ public class BeamSearch<V extends Vertex, E extends Edge> {
 			successors.clear();
 		}
 		// error case 
-		System.out.println("***ERROR CASE: Edit Distance is corrupt");
-		System.exit(0);
-		return -1;
+		throw new IllegalStateException("Edit Distance is corrupt, no complete edit path found!");
 	}
 	
 	
@@ -0,0 +1,579 @@
+package ged.alg.distance.comparison.beamsearch;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jgrapht.graph.AbstractGraph;
+
+import ged.structures.graph.Edge;
+import ged.structures.graph.IndexedGraph;
+import ged.structures.graph.Vertex;
+
+/**
+ * Beam search for the graph edit distance on int indexed graphs, computing the
+ * same edit paths as {@link BeamSearch} and {@link TreeNode}.
+ *
+ * A partial edit path only stores the matching of both graphs as int arrays,
+ * the unused vertices are the unmatched indices. The cost of a successor is
+ * computed as delta on its parent before it is copied, so successors that do
+ * not fit into a full beam are never created. The open list is a bounded
+ * min-max heap ordered by cost and then by insertion, like the TreeSet of
+ * {@link BeamSearch}.
+ *
+ * The search is an anytime algorithm: every expanded partial edit path is also
+ * completed by deleting and inserting all unused vertices, and if the search
+ * is stopped by its time limit, node budget or deadline it returns the best of
+ * these complete edit paths instead of failing.
+ */
+public class IndexedBeamSearch {
+	/** default time limit of a single search in ms */
+	public static final long MAX_TIME = 30000;
+
+	/**
+	 * Result of a search. If the search expired, the distance is the cost of
+	 * the best complete edit path found so far, i.e. an upper bound.
+	 */
+	public static final class Result {
+		private final double distance;
+		private final boolean expired;
+		private final long expandedNodes;
+
+		private Result(double distance, boolean expired, long expandedNodes) {
+			this.distance = distance;
+			this.expired = expired;
+			this.expandedNodes = expandedNodes;
+		}
+
+		public double getDistance() {
+			return this.distance;
+		}
+
+		/**
+		 * @return true if the search was stopped by the time limit, the node
+		 * budget or the deadline
+		 */
+		public boolean isExpired() {
+			return this.expired;
+		}
+
+		public long getExpandedNodes() {
+			return this.expandedNodes;
+		}
+	}
+
+	private final int s;
+	private final long timeLimit;
+	private final long nodeBudget;
+	/** System.nanoTime() after which all searches stop */
+	private volatile long deadline = Long.MAX_VALUE;
+	private final AtomicLong expiredSearches = new AtomicLong();
+
+	/**
+	 * @param s maximum number of open paths, Integer.MAX_VALUE: unlimited
+	 */
+	public IndexedBeamSearch(int s) {
+		this(s, MAX_TIME, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param s maximum number of open paths, Integer.MAX_VALUE: unlimited
+	 * @param timeLimit maximum time of a single search in ms, <=0: unlimited
+	 * @param nodeBudget maximum number of partial edit paths expanded by a
+	 * single search
+	 */
+	public IndexedBeamSearch(int s, long timeLimit, long nodeBudget) {
+		if (s < 1) {
+			throw new IllegalArgumentException("The beam needs at least one path!");
+		}
+		if (nodeBudget < 1) {
+			throw new IllegalArgumentException("The node budget must be positive!");
+		}
+		this.s = s;
+		this.timeLimit = timeLimit;
+		this.nodeBudget = nodeBudget;
+	}
+
+	public int getBeamWidth() {
+		return this.s;
+	}
+
+	/**
+	 * Stops all running and later searches at the given time, e.g. to impose a
+	 * time budget on all searches of an experiment. The searches still return
+	 * their best edit path found so far.
+	 *
+	 * @param deadline in System.nanoTime(), Long.MAX_VALUE: none
+	 */
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	public long getDeadline() {
+		return this.deadline;
+	}
+
+	/**
+	 * @return number of searches that expired since the last reset
+	 */
+	public long getNumberOfExpiredSearches() {
+		return this.expiredSearches.get();
+	}
+
+	public void resetNumberOfExpiredSearches() {
+		this.expiredSearches.set(0);
+	}
+
+	/**
+	 * @return the approximated edit distance between g1 and g2 of edit paths
+	 * substituting v1 by v2, an upper bound if the search expired
+	 */
+	public <V extends Vertex, E extends Edge> double getEditDistance(AbstractGraph<V,E> g1,
+			AbstractGraph<V,E> g2, V v1, V v2) {
+		IndexedGraph<V,E> graph1 = new IndexedGraph<V,E>(g1);
+		IndexedGraph<V,E> graph2 = new IndexedGraph<V,E>(g2);
+		return getEditDistance(graph1, graph2, graph1.getIndex(v1), graph2.getIndex(v2));
+	}
+
+	/**
+	 * @return the approximated edit distance between g1 and g2 of edit paths
+	 * substituting vertex i of g1 by vertex j of g2, an upper bound if the
+	 * search expired
+	 */
+	public <V extends Vertex, E extends Edge> double getEditDistance(IndexedGraph<V,E> g1,
+			IndexedGraph<V,E> g2, int i, int j) {
+		return search(g1, g2, i, j).getDistance();
+	}
+
+	/**
+	 * @return the approximated edit distance between g1 and g2, partial edit
+	 * paths more expensive than bound are discarded, an upper bound if the
+	 * search expired
+	 */
+	public <V extends Vertex, E extends Edge> double getEditDistance(AbstractGraph<V,E> g1,
+			AbstractGraph<V,E> g2, double bound) {
+		return search(g1, g2, bound).getDistance();
+	}
+
+	/**
+	 * Searches edit paths substituting vertex i of g1 by vertex j of g2.
+	 */
+	public <V extends Vertex, E extends Edge> Result search(IndexedGraph<V,E> g1,
+			IndexedGraph<V,E> g2, int i, int j) {
+		Search<V,E> search = new Search<V,E>(g1, g2);
+		Node start = search.start();
+		start.assignment[i] = j;
+		start.assignment[search.n1 + j] = i;
+		start.cost = search.matchCost(start, i, j);
+		start.left1--;
+		start.left2--;
+		start.next1 = search.nextUnused(start.assignment, 0);
+		return search.run(start, Double.MAX_VALUE);
+	}
+
+	/**
+	 * Searches edit paths between g1 and g2, partial edit paths more expensive
+	 * than bound are discarded.
+	 */
+	public <V extends Vertex, E extends Edge> Result search(AbstractGraph<V,E> g1,
+			AbstractGraph<V,E> g2, double bound) {
+		if (bound <= 0.) {
+			return new Result(0, false, 0);
+		}
+		Search<V,E> search = new Search<V,E>(new IndexedGraph<V,E>(g1), new IndexedGraph<V,E>(g2));
+		return search.run(search.start(), bound);
+	}
+
+	private static double round(double c) {
+		return (double) Math.round(c * 100000) / 100000;
+	}
+
+	/**
+	 * Partial edit path. assignment[i] is the vertex of g2 matched to vertex i
+	 * of g1, assignment[n1 + j] the vertex of g1 matched to vertex j of g2,
+	 * -1 if the vertex is unused and -2 if it is deleted or inserted.
+	 */
+	private static final class Node {
+		private final int[] assignment;
+		private double cost;
+		private long seq;
+		/** first unused vertex of g1 */
+		private int next1;
+		private int left1;
+		private int left2;
+
+		private Node(int[] assignment, double cost, int next1, int left1, int left2) {
+			this.assignment = assignment;
+			this.cost = cost;
+			this.next1 = next1;
+			this.left1 = left1;
+			this.left2 = left2;
+		}
+
+		private boolean isBefore(Node other) {
+			if (this.cost < other.cost) {
+				return true;
+			}
+			if (this.cost > other.cost) {
+				return false;
+			}
+			return this.seq < other.seq;
+		}
+	}
+
+	/**
+	 * The state of a single search, so the searcher can be shared by threads.
+	 */
+	private final class Search<V extends Vertex, E extends Edge> {
+		private final IndexedGraph<V,E> graph1;
+		private final IndexedGraph<V,E> graph2;
+		private final int n1;
+		private final int n2;
+		private final Beam open;
+		private long seq = 0;
+
+		// neighbors of the current vertices, valid if the mark equals stamp
+		private final int[] mark1;
+		private final int[] mark2;
+		private final int[] position2;
+		private int stamp = 0;
+
+		private Search(IndexedGraph<V,E> g1, IndexedGraph<V,E> g2) {
+			this.graph1 = g1;
+			this.graph2 = g2;
+			this.n1 = this.graph1.getNumberOfVertices();
+			this.n2 = this.graph2.getNumberOfVertices();
+			this.open = new Beam(s);
+			this.mark1 = new int[this.n1];
+			this.mark2 = new int[this.n2];
+			this.position2 = new int[this.n2];
+		}
+
+		private Node start() {
+			int[] assignment = new int[this.n1 + this.n2];
+			Arrays.fill(assignment, -1);
+			return new Node(assignment, 0, 0, this.n1, this.n2);
+		}
+
+		private Result run(Node start, double bound) {
+			bound = round(bound);
+			long now = System.nanoTime();
+			long stop = IndexedBeamSearch.this.deadline;
+			if (timeLimit > 0 && timeLimit < (stop - now) / 1000000) {
+				stop = now + timeLimit * 1000000;
+			}
+			boolean timed = stop != Long.MAX_VALUE;
+			// cost of the best complete edit path found so far
+			double best = completionCost(start);
+			long expanded = 0;
+			add(start);
+			while (!this.open.isEmpty()) {
+				if (expanded >= nodeBudget || (timed && System.nanoTime() - stop > 0)) {
+					expiredSearches.incrementAndGet();
+					return new Result(best, true, expanded);
+				}
+				Node u = this.open.pollFirst();
+				if (u.left1 == 0 && u.left2 == 0) {
+					return new Result(u.cost, false, expanded);
+				}
+				best = Math.min(best, completionCost(u));
+				expand(u, bound);
+				expanded++;
+			}
+			throw new IllegalStateException("The edit distance is corrupt, no complete edit path found!");
+		}
+
+		/**
+		 * @return the cost of completing u by deleting the unused vertices of g1
+		 * and inserting the unused vertices of g2
+		 */
+		private double completionCost(Node u) {
+			Node tn = copy(u);
+			deleteRemaining(tn, 0, this.n1, this.graph1);
+			deleteRemaining(tn, this.n1, this.n2, this.graph2);
+			return tn.cost;
+		}
+
+		/**
+		 * Adds the successors of u to the open list, in the order of
+		 * {@link TreeNode#generateSuccessors(double)}.
+		 */
+		private void expand(Node u, double bound) {
+			int[] m = u.assignment;
+			if (u.left2 == 0) {
+				// the remaining vertices of g1 are deleted
+				Node tn = copy(u);
+				deleteRemaining(tn, 0, this.n1, this.graph1);
+				tn.left1 = 0;
+				tn.next1 = this.n1;
+				if (round(tn.cost) <= bound) {
+					add(tn);
+				}
+			} else if (u.left1 == 0) {
+				// the remaining vertices of g2 are inserted
+				Node tn = copy(u);
+				deleteRemaining(tn, this.n1, this.n2, this.graph2);
+				tn.left2 = 0;
+				if (round(tn.cost) <= bound) {
+					add(tn);
+				}
+			} else {
+				int i = u.next1;
+				for (int j = 0; j < this.n2; j++) {
+					if (m[this.n1 + j] != -1) {
+						continue;
+					}
+					m[i] = j;
+					m[this.n1 + j] = i;
+					double cost = matchCost(u, i, j);
+					if (round(cost) <= bound && fits(cost)) {
+						Node tn = new Node(m.clone(), cost, nextUnused(m, i + 1), u.left1 - 1, u.left2 - 1);
+						add(tn);
+					}
+					m[i] = -1;
+					m[this.n1 + j] = -1;
+				}
+				// deletion of the first unused vertex of g1
+				m[i] = -2;
+				double cost = u.cost + 1;
+				cost += processedNeighbors(m, 0, this.graph1, i);
+				if (round(cost) <= bound && fits(cost)) {
+					add(new Node(m.clone(), cost, nextUnused(m, i + 1), u.left1 - 1, u.left2));
+				}
+				m[i] = -1;
+			}
+		}
+
+		/**
+		 * @return false if a node with the given cost would be dropped from the
+		 * beam right away, it is inserted after all nodes of equal cost
+		 */
+		private boolean fits(double cost) {
+			return !this.open.isFull() || cost < this.open.peekLast().cost;
+		}
+
+		private void add(Node node) {
+			node.seq = this.seq++;
+			this.open.add(node);
+		}
+
+		private Node copy(Node u) {
+			return new Node(u.assignment.clone(), u.cost, u.next1, u.left1, u.left2);
+		}
+
+		private int nextUnused(int[] m, int from) {
+			while (from < this.n1 && m[from] != -1) {
+				from++;
+			}
+			return from;
+		}
+
+		/**
+		 * @return the cost of u after substituting vertex i of g1 by vertex j of
+		 * g2, both already have to be matched in u
+		 */
+		private double matchCost(Node u, int i, int j) {
+			int[] m = u.assignment;
+			double cost = u.cost + this.graph1.getVertex(i).getDistance(this.graph2.getVertex(j));
+
+			this.stamp++;
+			for (int p = this.graph2.getNeighborStart(j); p < this.graph2.getNeighborEnd(j); p++) {
+				int w = this.graph2.getNeighbor(p);
+				if (this.mark2[w] != this.stamp) {
+					this.mark2[w] = this.stamp;
+					this.position2[w] = p;
+				}
+			}
+			for (int p = this.graph1.getNeighborStart(i); p < this.graph1.getNeighborEnd(i); p++) {
+				this.mark1[this.graph1.getNeighbor(p)] = this.stamp;
+			}
+
+			// edges of g1 that are substituted or deleted
+			for (int p = this.graph1.getNeighborStart(i); p < this.graph1.getNeighborEnd(i); p++) {
+				int end2 = m[this.graph1.getNeighbor(p)];
+				if (end2 == -1) {
+					continue;
+				}
+				E edge = this.graph1.getEdge(p);
+				if (end2 >= 0 && this.mark2[end2] == this.stamp) {
+					cost += edge.getDistance(this.graph2.getEdge(this.position2[end2]));
+				} else {
+					cost += edge.getDeletionCost();
+				}
+			}
+			// edges of g2 that are inserted
+			for (int p = this.graph2.getNeighborStart(j); p < this.graph2.getNeighborEnd(j); p++) {
+				int start2 = m[this.n1 + this.graph2.getNeighbor(p)];
+				if (start2 != -1 && this.mark1[start2] != this.stamp) {
+					cost += this.graph2.getEdge(p).getDeletionCost();
+				}
+			}
+			return cost;
+		}
+
+		/**
+		 * Deletes (or inserts) all unused vertices of one graph, whose
+		 * assignments start at offset.
+		 */
+		private void deleteRemaining(Node tn, int offset, int n, IndexedGraph<V,E> graph) {
+			int[] m = tn.assignment;
+			int count = 0;
+			int e = 0;
+			for (int v = 0; v < n; v++) {
+				if (m[offset + v] != -1) {
+					continue;
+				}
+				count++;
+				e += processedNeighbors(m, offset, graph, v);
+				m[offset + v] = -2;
+			}
+			tn.cost += count;
+			tn.cost += e;
+		}
+
+		/**
+		 * @return number of edges of v whose other end has been processed
+		 */
+		private int processedNeighbors(int[] m, int offset, IndexedGraph<V,E> graph, int v) {
+			int e = 0;
+			for (int p = graph.getNeighborStart(v); p < graph.getNeighborEnd(v); p++) {
+				if (m[offset + graph.getNeighbor(p)] != -1) {
+					e++;
+				}
+			}
+			return e;
+		}
+	}
+
+	/**
+	 * Min-max heap of at most s nodes, adding to a full heap drops the last
+	 * node.
+	 */
+	private static final class Beam {
+		private final int capacity;
+		private Node[] heap = new Node[16];
+		private int size = 0;
+
+		private Beam(int capacity) {
+			this.capacity = capacity;
+		}
+
+		private boolean isEmpty() {
+			return this.size == 0;
+		}
+
+		private boolean isFull() {
+			return this.size >= this.capacity;
+		}
+
+		private void add(Node node) {
+			if (this.size == this.heap.length) {
+				this.heap = Arrays.copyOf(this.heap, 2 * this.size);
+			}
+			this.heap[this.size] = node;
+			bubbleUp(this.size++);
+			if (this.size > this.capacity) {
+				pollLast();
+			}
+		}
+
+		private Node pollFirst() {
+			return removeAt(0);
+		}
+
+		private Node peekLast() {
+			return this.heap[lastIndex()];
+		}
+
+		private Node pollLast() {
+			return removeAt(lastIndex());
+		}
+
+		private int lastIndex() {
+			if (this.size <= 2) {
+				return this.size - 1;
+			}
+			return this.heap[1].isBefore(this.heap[2]) ? 2 : 1;
+		}
+
+		private Node removeAt(int i) {
+			Node node = this.heap[i];
+			this.size--;
+			this.heap[i] = this.heap[this.size];
+			this.heap[this.size] = null;
+			if (i < this.size) {
+				trickleDown(i);
+			}
+			return node;
+		}
+
+		private static boolean isMinLevel(int i) {
+			return ((31 - Integer.numberOfLeadingZeros(i + 1)) & 1) == 0;
+		}
+
+		/** a before b on min levels, b before a on max levels */
+		private static boolean ordered(Node a, Node b, boolean min) {
+			return min ? a.isBefore(b) : b.isBefore(a);
+		}
+
+		private void bubbleUp(int i) {
+			if (i == 0) {
+				return;
+			}
+			int parent = (i - 1) / 2;
+			boolean min = isMinLevel(i);
+			if (ordered(this.heap[parent], this.heap[i], min)) {
+				swap(i, parent);
+				bubbleUp(parent, !min);
+			} else {
+				bubbleUp(i, min);
+			}
+		}
+
+		private void bubbleUp(int i, boolean min) {
+			while (i > 2) {
+				int grandparent = ((i - 1) / 2 - 1) / 2;
+				if (!ordered(this.heap[i], this.heap[grandparent], min)) {
+					break;
+				}
+				swap(i, grandparent);
+				i = grandparent;
+			}
+		}
+
+		private void trickleDown(int i) {
+			boolean min = isMinLevel(i);
+			while (2 * i + 1 < this.size) {
+				// best of the children and grandchildren
+				int m = 2 * i + 1;
+				for (int c = 2 * i + 2; c <= 2 * i + 2 && c < this.size; c++) {
+					if (ordered(this.heap[c], this.heap[m], min)) {
+						m = c;
+					}
+				}
+				for (int c = 4 * i + 3; c <= 4 * i + 6 && c < this.size; c++) {
+					if (ordered(this.heap[c], this.heap[m], min)) {
+						m = c;
+					}
+				}
+				if (!ordered(this.heap[m], this.heap[i], min)) {
+					return;
+				}
+				swap(m, i);
+				if (m <= 2 * i + 2) {
+					return;
+				}
+				int parent = (m - 1) / 2;
+				if (ordered(this.heap[parent], this.heap[m], min)) {
+					swap(m, parent);
+				}
+				i = m;
+			}
+		}
+
+		private void swap(int i, int j) {
+			Node node = this.heap[i];
+			this.heap[i] = this.heap[j];
+			this.heap[j] = node;
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package ged.alg.distance.comparison.graphlets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jgrapht.graph.AbstractGraph;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import ged.alg.graphencoder.ColorRefinement;
+import ged.alg.graphencoder.WLColorDictionary;
+import ged.structures.graph.Edge;
+import ged.structures.graph.IndexedGraph;
+import ged.structures.graph.LabeledEdge;
+import ged.structures.graph.PGraph;
+import ged.structures.graph.Vertex;
+
+/**
+ * The k-hop graphlets of all vertices of a graph, extracted once per graph and
+ * kept as long as the graph is referenced. The graphs are compared by
+ * identity, so they must not be changed after their graphlets were extracted.
+ *
+ * The vertices of a graphlet are ordered by their distance to the root and
+ * their color after color refinement, so isomorphic graphlets usually get the
+ * same order. Graphlets with the same vertex labels, edges and edge labels in
+ * the same order get the same id, so the edit distance of two graphlets only
+ * has to be computed once per pair of ids.
+ */
+public class GraphletCache {
+
+	/**
+	 * Graphlet of a vertex, the vertex is the first one of the graphlet.
+	 */
+	public static final class Graphlet<V, E> {
+		private final IndexedGraph<V,E> graph;
+		private final int id;
+		private final double deletionCost;
+
+		private Graphlet(IndexedGraph<V,E> graph, int id, double deletionCost) {
+			this.graph = graph;
+			this.id = id;
+			this.deletionCost = deletionCost;
+		}
+
+		public IndexedGraph<V,E> getGraph() {
+			return this.graph;
+		}
+
+		/**
+		 * @return equal ids for graphlets with equal labels and edges in the
+		 * same order
+		 */
+		public int getId() {
+			return this.id;
+		}
+
+		/**
+		 * @return the cost of deleting all vertices and edges of the graphlet
+		 */
+		public double getDeletionCost() {
+			return this.deletionCost;
+		}
+	}
+
+	private static final class Signature {
+		private final int[] values;
+		private final int hash;
+
+		private Signature(int[] values) {
+			this.values = values;
+			this.hash = Arrays.hashCode(values);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			// the class is private, so no instanceof check is needed
+			return Arrays.equals(this.values, ((Signature) other).values);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+	}
+
+	private final int k;
+	private final WLColorDictionary dictionary = new WLColorDictionary();
+	private final ConcurrentHashMap<Signature, Integer> ids = new ConcurrentHashMap<Signature, Integer>();
+	private final AtomicInteger nextId = new AtomicInteger();
+	private final Cache<AbstractGraph<?,?>, List<?>> graphlets = CacheBuilder.newBuilder().weakKeys().build();
+
+	/**
+	 * @param k radius of the graphlets
+	 */
+	public GraphletCache(int k) {
+		this.k = k;
+	}
+
+	public int getK() {
+		return this.k;
+	}
+
+	/**
+	 * @return the graphlets of all vertices of g, in the order of the vertex set
+	 */
+	@SuppressWarnings("unchecked")
+	public <V extends Vertex, E extends Edge> List<Graphlet<V,E>> getGraphlets(AbstractGraph<V,E> g) {
+		try {
+			return (List<Graphlet<V,E>>) this.graphlets.get(g, () -> extractAll(g));
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private <V extends Vertex, E extends Edge> List<Graphlet<V,E>> extractAll(AbstractGraph<V,E> g) {
+		List<Graphlet<V,E>> list = new ArrayList<Graphlet<V,E>>(g.vertexSet().size());
+		for (V v : g.vertexSet()) {
+			list.add(extract(g, v));
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <V extends Vertex, E extends Edge> Graphlet<V,E> extract(AbstractGraph<V,E> g, V root) {
+		// same vertices and edges as SubgraphMatching always used: all edges
+		// of the vertices closer to the root than k
+		PGraph<V,E> graphlet = new PGraph<V,E>((Class<? extends E>) LabeledEdge.class);
+		List<V> vertices = new ArrayList<V>();
+		List<Integer> distances = new ArrayList<Integer>();
+		graphlet.addVertex(root);
+		vertices.add(root);
+		distances.add(0);
+		HashSet<V> verticesAtK = new HashSet<V>();
+		verticesAtK.add(root);
+		for (int i = 0; i < this.k; i++) {
+			HashSet<V> verticesAtKplus = new HashSet<V>();
+			for (V v : verticesAtK) {
+				for (E e : g.edgesOf(v)) {
+					V u = g.getEdgeSource(e);
+					if (u.equals(v)) {
+						u = g.getEdgeTarget(e);
+					}
+					if (!graphlet.containsVertex(u)) {
+						graphlet.addVertex(u);
+						verticesAtKplus.add(u);
+						vertices.add(u);
+						distances.add(i + 1);
+					}
+					if (!graphlet.containsEdge(e)) {
+						graphlet.addEdge(v, u, e);
+					}
+				}
+			}
+			verticesAtK = verticesAtKplus;
+		}
+
+		// canonical order by distance and refined color
+		IndexedGraph<V,E> indexed = new IndexedGraph<V,E>(graphlet);
+		int n = indexed.getNumberOfVertices();
+		String[] labels = new String[n];
+		int[] distance = new int[n];
+		Integer[] order = new Integer[n];
+		for (int v = 0; v < n; v++) {
+			int index = indexed.getIndex(vertices.get(v));
+			distance[index] = distances.get(v);
+			labels[index] = distances.get(v) + " " + vertices.get(v);
+			order[v] = index;
+		}
+		ColorRefinement refinement = new ColorRefinement(indexed, labels, this.dictionary);
+		refinement.fullyRefine();
+		Arrays.sort(order, (a, b) -> distance[a] != distance[b] ? Integer.compare(distance[a], distance[b])
+				: Integer.compare(refinement.getColor(a), refinement.getColor(b)));
+		int[] position = new int[n];
+		for (int p = 0; p < n; p++) {
+			position[order[p]] = p;
+		}
+
+		// edges sorted by their ends, so the neighbors are sorted as well
+		PGraph<V,E> canonical = new PGraph<V,E>((Class<? extends E>) LabeledEdge.class);
+		for (int p = 0; p < n; p++) {
+			canonical.addVertex(indexed.getVertex(order[p]));
+		}
+		List<long[]> edges = new ArrayList<long[]>();
+		for (int v = 0; v < n; v++) {
+			for (int q = indexed.getNeighborStart(v); q < indexed.getNeighborEnd(v); q++) {
+				int a = position[v], b = position[indexed.getNeighbor(q)];
+				if (a <= b) {
+					edges.add(new long[] {a, b, q});
+				}
+			}
+		}
+		edges.sort((x, y) -> x[0] != y[0] ? Long.compare(x[0], y[0]) : Long.compare(x[1], y[1]));
+		for (long[] edge : edges) {
+			canonical.addEdge(indexed.getVertex(order[(int) edge[0]]), indexed.getVertex(order[(int) edge[1]]),
+					indexed.getEdge((int) edge[2]));
+		}
+		IndexedGraph<V,E> result = new IndexedGraph<V,E>(canonical);
+		return new Graphlet<V,E>(result, id(result), deletionCost(canonical));
+	}
+
+	/**
+	 * @return the id of the labels and edges of the graphlet in their order
+	 */
+	private int id(IndexedGraph<?,?> graphlet) {
+		int n = graphlet.getNumberOfVertices();
+		int numPositions = n == 0 ? 0 : graphlet.getNeighborEnd(n - 1);
+		int[] values = new int[1 + 2 * n + 2 * numPositions];
+		int c = 0;
+		values[c++] = n;
+		for (int v = 0; v < n; v++) {
+			values[c++] = this.dictionary.color(graphlet.getVertex(v).toString());
+		}
+		for (int v = 0; v < n; v++) {
+			values[c++] = graphlet.getDegree(v);
+			for (int p = graphlet.getNeighborStart(v); p < graphlet.getNeighborEnd(v); p++) {
+				values[c++] = graphlet.getNeighbor(p);
+				values[c++] = this.dictionary.color(String.valueOf(graphlet.getEdge(p)));
+			}
+		}
+		Signature signature = new Signature(values);
+		Integer id = this.ids.get(signature);
+		if (id != null) {
+			return id;
+		}
+		return this.ids.computeIfAbsent(signature, s -> this.nextId.getAndIncrement());
+	}
+
+	private static <V extends Vertex, E extends Edge> double deletionCost(AbstractGraph<V,E> g) {
+		double rV = 0;
+		double rE = 0;
+		for (V v : g.vertexSet()) {
+			rV += v.getDeletionCost();
+		}
+		for (E e : g.edgeSet()) {
+			rE += e.getDeletionCost();
+		}
+		return rV + rE;
+	}
+}
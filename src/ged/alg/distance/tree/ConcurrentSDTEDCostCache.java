@@ -0,0 +1,132 @@
+package ged.alg.distance.tree;
+
+/**
+ * Thread-safe variant of {@link SDTEDCostCache}. The keys are distributed over
+ * a number of independently locked stripes, each of them a bounded LRU cache,
+ * so worker threads computing distances of different graph pairs can share one
+ * warm cache and rarely contend for the same lock.
+ *
+ * As for SDTEDCostCache the cache must only be shared between computations
+ * using the same layer weight factor.
+ */
+public class ConcurrentSDTEDCostCache implements SDTEDCostTable
+{
+  private final SDTEDCostCache[] stripes;
+  private final int stripeMask;
+
+  /**
+   * @param maxSize
+   *          maximum number of stored costs (over all stripes)
+   */
+  public ConcurrentSDTEDCostCache(int maxSize)
+  {
+    this(maxSize, 4 * Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * @param maxSize
+   *          maximum number of stored costs (over all stripes)
+   * @param numStripes
+   *          number of independently locked parts, rounded up to a power of
+   *          two
+   */
+  public ConcurrentSDTEDCostCache(int maxSize, int numStripes)
+  {
+    if (maxSize <= 0)
+      throw new IllegalArgumentException("The cache size must be positive!");
+    int n = Integer.highestOneBit(Math.max(1, numStripes) * 2 - 1);
+    n = Math.min(n, Integer.highestOneBit(maxSize));
+    stripes = new SDTEDCostCache[n];
+    for (int i = 0; i < n; ++i)
+      stripes[i] = new SDTEDCostCache(Math.max(1, maxSize / n));
+    stripeMask = n - 1;
+  }
+
+  @Override
+  public double get(long key)
+  {
+    SDTEDCostCache stripe = stripe(key);
+    synchronized (stripe)
+    {
+      return stripe.get(key);
+    }
+  }
+
+  @Override
+  public void put(long key, double cost)
+  {
+    SDTEDCostCache stripe = stripe(key);
+    synchronized (stripe)
+    {
+      stripe.put(key, cost);
+    }
+  }
+
+  public int size()
+  {
+    int size = 0;
+    for (SDTEDCostCache stripe : stripes)
+      synchronized (stripe)
+      {
+        size += stripe.size();
+      }
+    return size;
+  }
+
+  public long getHits()
+  {
+    long hits = 0;
+    for (SDTEDCostCache stripe : stripes)
+      synchronized (stripe)
+      {
+        hits += stripe.getHits();
+      }
+    return hits;
+  }
+
+  public long getMisses()
+  {
+    long misses = 0;
+    for (SDTEDCostCache stripe : stripes)
+      synchronized (stripe)
+      {
+        misses += stripe.getMisses();
+      }
+    return misses;
+  }
+
+  public long getEvictions()
+  {
+    long evictions = 0;
+    for (SDTEDCostCache stripe : stripes)
+      synchronized (stripe)
+      {
+        evictions += stripe.getEvictions();
+      }
+    return evictions;
+  }
+
+  public void clear()
+  {
+    for (SDTEDCostCache stripe : stripes)
+      synchronized (stripe)
+      {
+        stripe.clear();
+      }
+  }
+
+  @Override
+  public String toString()
+  {
+    return "ConcurrentSDTEDCostCache[stripes=" + stripes.length + ", size="
+        + size() + ", hits=" + getHits() + ", misses=" + getMisses()
+        + ", evictions=" + getEvictions() + "]";
+  }
+
+  private SDTEDCostCache stripe(long key)
+  {
+    // use other bits than the stripes themselves use for their buckets
+    long h = key * 0xC2B2AE3D27D4EB4FL;
+    return stripes[(int) (h >>> 40) & stripeMask];
+  }
+}
@@ -1,57 +1,61 @@
 package ged.alg.distance.tree;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
+import ged.alg.assignment.AssignmentSolver;
+import ged.alg.assignment.AssignmentWorkspace;
 import ged.alg.assignment.HungarianAlgorithm;
+import ged.alg.assignment.HungarianSolver;
+import ged.alg.distance.GraphDistance;
 import ged.structures.graph.Edge;
 import ged.structures.graph.Vertex;
 import ged.structures.tree.CTree;
+import ged.structures.tree.CompactTree;
+import ged.structures.tree.SubtreeInterner;
 import ged.structures.tree.Tree;
 import ged.structures.tree.Tree.ChildWithEdge;
 
 public class SDTEDCached
 {
-  private final static class Encoding
-  {
-    private final String s1;
-    private final String s2;
-
-    public Encoding(String s1, String s2)
-    {
-      this.s1 = s1;
-      this.s2 = s2;
-    }
-
-    @Override
-    public boolean equals(Object other)
-    {
-      // no instanceof check for performance it is not needed anyway as the
-      // class is private
-      Encoding encoding = (Encoding) other;
-      return s1.equals(encoding.s1) && s2.equals(encoding.s2)// symmetry
-          || s1.equals(encoding.s2) && s2.equals(encoding.s1);
-    }
-
-    @Override
-    public int hashCode()
-    {
-      return s1.hashCode() ^ s2.hashCode();// symmetry
-    }
-  }
-  private static final String NULL_PLACEHOLDER = "[*null*]";
-  private final Map<Encoding, Double> costMap = new HashMap<Encoding, Double>();
+  private final SDTEDCostTable costMap;
   private final double layerWeightFactor;
+  private final AssignmentSolver solver;
+  // set by the public entry points, instances must not be used concurrently
+  private AssignmentWorkspace workspace;
 
   public SDTEDCached()
   {
-    layerWeightFactor = 1;
+    this(1);
   }
 
   public SDTEDCached(double layerWeightFactor)
+  {
+    this(layerWeightFactor, new SDTEDCostMap());
+  }
+
+  /**
+   * @param layerWeightFactor
+   * @param costMap
+   *          table used to store the computed costs, it may be shared with other
+   *          instances using the same layerWeightFactor
+   */
+  public SDTEDCached(double layerWeightFactor, SDTEDCostTable costMap)
+  {
+    this(layerWeightFactor, costMap, new HungarianSolver());
+  }
+
+  /**
+   * @param layerWeightFactor
+   * @param costMap
+   * @param solver
+   *          solver for the assignments between children
+   */
+  public SDTEDCached(double layerWeightFactor, SDTEDCostTable costMap,
+      AssignmentSolver solver)
   {
     this.layerWeightFactor = layerWeightFactor;
+    this.costMap = costMap;
+    this.solver = solver;
   }
 
   // Structure and depth preserving tree edit distance as described in
@@ -63,19 +67,26 @@ public class SDTEDCached
    * @param root1
    * @param t2
    * @param root2
+   * @param depth
+   *          recursion depth, selects the cost matrix of the workspace
    * @return computes the structure and depth preserving tree edit distance
    *         between subtree of t1 rooted at root and subtree of t2 rooted at
    *         root2
    */
   private <V extends Vertex, E extends Edge> double computeSDTED(Tree<V, E> t1,
-      V root1, Tree<V, E> t2, V root2)
+      V root1, Tree<V, E> t2, V root2, int depth)
   {
-    Encoding encoding = computeJointEncoding(t1, root1, t2, root2);
-    if (encoding == null)//
+    int id1 = t1 == null ? SubtreeInterner.NULL_ID
+        : t1.computeSubtreeIdCached(root1);
+    int id2 = t2 == null ? SubtreeInterner.NULL_ID
+        : t2.computeSubtreeIdCached(root2);
+    // equivalent subtrees, we know there will be no cost
+    if (id1 == id2)//
       return 0;
 
-    Double storedCost = costMap.get(encoding);
-    if (storedCost != null)//
+    long key = SubtreeInterner.pair(id1, id2);
+    double storedCost = costMap.get(key);
+    if (!Double.isNaN(storedCost))//
       return storedCost;
 
     final double cost;
@@ -85,32 +96,12 @@ public class SDTEDCached
       cost = deletion(t1, root1);// symmetry
     else
       cost = root1.getDistance(root2)// distance between roots
-      + computeSDM(t1, root1, t2, root2) * layerWeightFactor;
+      + computeSDM(t1, root1, t2, root2, depth) * layerWeightFactor;
 
-    costMap.put(encoding, cost);
+    costMap.put(key, cost);
     return cost;
   }
 
-  /**
-   * computes the joint encoding for two nodes subtrees. null will be returned
-   * if the encodings of the subtrees are equivalent as we know there will be no
-   * cost
-   */
-  private static <V extends Vertex> Encoding computeJointEncoding(Tree<V, ?> t1,
-      V v1, Tree<V, ?> t2, V v2)
-  {
-    String enc1 = t1 == null//
-        ? NULL_PLACEHOLDER
-            : t1.computeLexicographicEncodingCached(v1);
-    String enc2 = t2 == null//
-        ? NULL_PLACEHOLDER
-            : t2.computeLexicographicEncodingCached(v2);
-
-    return enc1.equals(enc2)//
-        ? null
-            : new Encoding(enc1, enc2);
-  }
-
   /**
    * @param t
    * @param v
@@ -134,7 +125,7 @@ public class SDTEDCached
    *         root1 and root2
    */
   private <V extends Vertex, E extends Edge> double computeSDM(Tree<V, E> t1,
-      V root1, Tree<V, E> t2, V root2)
+      V root1, Tree<V, E> t2, V root2, int depth)
   {
     List<ChildWithEdge<V, E>> children1 = t1.getChildrenWithEdges(root1);
     List<ChildWithEdge<V, E>> children2 = t2.getChildrenWithEdges(root2);
@@ -145,15 +136,15 @@ public class SDTEDCached
     // if both vertices have no children we can return 0
     if (max == 0) return 0;
 
-    // compute costmatrix
-    double[][] c = new double[max][max];
+    // compute costmatrix, the children are on the next level of the recursion
+    double[] c = workspace.matrix(depth, max);
     for (int i = 0; i < n; ++i)
     {
       ChildWithEdge<V, E> child1 = children1.get(i);
       for (int j = 0; j < m; ++j)
       {
         ChildWithEdge<V, E> child2 = children2.get(j);
-        c[i][j] = computeSDTED(t1, child1.v, t2, child2.v)
+        c[i * max + j] = computeSDTED(t1, child1.v, t2, child2.v, depth + 1)
             + child1.e.getDistance(child2.e);
       }
     }
@@ -163,10 +154,10 @@ public class SDTEDCached
       for (int j = 0; j < max; ++j)
       {
         ChildWithEdge<V, E> child = children2.get(j);
-        double cost = computeSDTED(null, null, t2, child.v)
+        double cost = computeSDTED(null, null, t2, child.v, depth + 1)
             + child.e.getDeletionCost(); // symmetry
         for (int i = n; i < max; ++i)
-          c[i][j] = cost;
+          c[i * max + j] = cost;
       }
     }
     else if (m < n)
@@ -174,21 +165,22 @@ public class SDTEDCached
       for (int i = 0; i < max; ++i)
       {
         ChildWithEdge<V, E> child = children1.get(i);
-        double cost = computeSDTED(t1, child.v, null, null)
+        double cost = computeSDTED(t1, child.v, null, null, depth + 1)
             + child.e.getDeletionCost();// symmetry
         for (int j = m; j < max; ++j)
-          c[i][j] = cost;
+          c[i * max + j] = cost;
       }
     }
 
     // solve assignment and return costs
-    return assignmentCost(c);
+    return solver.assignmentCost(c, max);
   }
 
   public <V extends Vertex, E extends Edge> double[][] computeCostMatrix(
       List<? extends Tree<V, E>> trees1, List<? extends Tree<V, E>> trees2)
   {
     // copy the lists so the outside reference is not modified
+    workspace = AssignmentWorkspace.get();
     int n = trees1.size();
     int m = trees2.size();
 
@@ -203,7 +195,7 @@ public class SDTEDCached
       for (int j = 0; j < m; ++j)
       {
         Tree<V, E> t2 = trees2.get(j);
-        c[i][j] = computeSDTED(t1, r1, t2, t2.getRoot());
+        c[i][j] = computeSDTED(t1, r1, t2, t2.getRoot(), 0);
       }
     }
 
@@ -212,7 +204,7 @@ public class SDTEDCached
       for (int j = 0; j < max; ++j)
       {
         Tree<V, E> t2 = trees2.get(j);
-        double cost = computeSDTED(null, null, t2, t2.getRoot());
+        double cost = computeSDTED(null, null, t2, t2.getRoot(), 0);
         for (int i = n; i < max; ++i)
           c[i][j] = cost;
       }
@@ -222,7 +214,7 @@ public class SDTEDCached
       for (int i = 0; i < max; ++i)
       {
         Tree<V, E> t1 = trees1.get(i);
-        double cost = computeSDTED(t1, t1.getRoot(), null, null);
+        double cost = computeSDTED(t1, t1.getRoot(), null, null, 0);
         for (int j = m; j < max; ++j)
           c[i][j] = cost;
       }
@@ -230,6 +222,311 @@ public class SDTEDCached
     return c;
   }
 
+  /**
+   * @param t1
+   * @param v1
+   *          node of t1, ignored if t1 is null
+   * @param t2
+   * @param v2
+   *          node of t2, ignored if t2 is null
+   * @return same as {@link #computeSDTED(Tree, Vertex, Tree, Vertex, int)} for
+   *         compact trees, labels are compared with the uniform cost model
+   */
+  private double computeSDTED(CompactTree t1, int v1, CompactTree t2, int v2,
+      int depth)
+  {
+    int id1 = t1 == null ? SubtreeInterner.NULL_ID : t1.getSubtreeId(v1);
+    int id2 = t2 == null ? SubtreeInterner.NULL_ID : t2.getSubtreeId(v2);
+    // equivalent subtrees, we know there will be no cost
+    if (id1 == id2)//
+      return 0;
+
+    long key = SubtreeInterner.pair(id1, id2);
+    double storedCost = costMap.get(key);
+    if (!Double.isNaN(storedCost))//
+      return storedCost;
+
+    final double cost;
+    if (t1 == null)//
+      cost = deletion(t2, v2);// symmetry
+    else if (t2 == null)//
+      cost = deletion(t1, v1);// symmetry
+    else
+      cost = (t1.getLabel(v1) == t2.getLabel(v2) ? 0
+          : GraphDistance.VERTEX_SUBSTITUTION_COSTS)// distance between roots
+          + computeSDM(t1, v1, t2, v2, depth) * layerWeightFactor;
+
+    costMap.put(key, cost);
+    return cost;
+  }
+
+  /**
+   * @param t
+   * @param v
+   * @return returns the costs for deleting the subtree of t rooted at v
+   */
+  private double deletion(CompactTree t, int v)
+  {
+    double childCost = 0;
+    for (int c = t.getChildStart(v); c < t.getChildEnd(v); ++c)
+    {
+      int child = t.getChild(c);
+      if (child >= 0) childCost += deletion(t, child)
+          + GraphDistance.EDGE_INSERTION_DELETION_COSTS;
+    }
+
+    return GraphDistance.VERTEX_INSERTION_DELETION_COSTS
+        + childCost * layerWeightFactor;
+  }
+
+  /**
+   * @param t1
+   * @param v1
+   * @param t2
+   * @param v2
+   * @return computes the cost of an optimal assignment between the children of
+   *         v1 and v2
+   */
+  private double computeSDM(CompactTree t1, int v1, CompactTree t2, int v2,
+      int depth)
+  {
+    int n = t1.getNumberOfChildren(v1);
+    int m = t2.getNumberOfChildren(v2);
+    int max = Math.max(n, m);
+    // if both vertices have no children we can return 0
+    if (max == 0) return 0;
+
+    // compute costmatrix, the children are on the next level of the recursion
+    double[] c = workspace.matrix(depth, max);
+    int end1 = t1.getChildEnd(v1);
+    int end2 = t2.getChildEnd(v2);
+    int i = 0;
+    for (int p1 = t1.getChildStart(v1); p1 < end1; ++p1)
+    {
+      int child1 = t1.getChild(p1);
+      if (child1 < 0) continue;// gap
+      int edge1 = t1.getChildEdgeLabel(p1);
+      int j = 0;
+      for (int p2 = t2.getChildStart(v2); p2 < end2; ++p2)
+      {
+        int child2 = t2.getChild(p2);
+        if (child2 < 0) continue;
+        c[i * max + j++] = computeSDTED(t1, child1, t2, child2, depth + 1)
+            + (edge1 == t2.getChildEdgeLabel(p2) ? 0
+                : GraphDistance.EDGE_SUBSTITUTION_COSTS);
+      }
+      ++i;
+    }
+
+    if (n < m)
+    {
+      int j = 0;
+      for (int p2 = t2.getChildStart(v2); p2 < end2; ++p2)
+      {
+        int child2 = t2.getChild(p2);
+        if (child2 < 0) continue;
+        double cost = computeSDTED(null, -1, t2, child2, depth + 1)
+            + GraphDistance.EDGE_INSERTION_DELETION_COSTS; // symmetry
+        for (i = n; i < max; ++i)
+          c[i * max + j] = cost;
+        ++j;
+      }
+    }
+    else if (m < n)
+    {
+      i = 0;
+      for (int p1 = t1.getChildStart(v1); p1 < end1; ++p1)
+      {
+        int child1 = t1.getChild(p1);
+        if (child1 < 0) continue;
+        double cost = computeSDTED(t1, child1, null, -1, depth + 1)
+            + GraphDistance.EDGE_INSERTION_DELETION_COSTS;// symmetry
+        for (int j = m; j < max; ++j)
+          c[i * max + j] = cost;
+        ++i;
+      }
+    }
+
+    // solve assignment and return costs
+    return solver.assignmentCost(c, max);
+  }
+
+  /**
+   * @param trees1
+   * @param trees2
+   * @return the cost matrix between the compact trees, equal to
+   *         {@link #computeCostMatrix(List, List)} for the original trees if
+   *         they use the uniform label cost model
+   */
+  public double[][] computeCompactCostMatrix(List<? extends CompactTree> trees1,
+      List<? extends CompactTree> trees2)
+  {
+    workspace = AssignmentWorkspace.get();
+    int n = trees1.size();
+    int m = trees2.size();
+
+    int max = Math.max(n, m);
+
+    // compute costmatrix
+    double[][] c = new double[max][max];
+    for (int i = 0; i < n; ++i)
+    {
+      CompactTree t1 = trees1.get(i);
+      for (int j = 0; j < m; ++j)
+      {
+        CompactTree t2 = trees2.get(j);
+        c[i][j] = computeSDTED(t1, t1.getRoot(), t2, t2.getRoot(), 0);
+      }
+    }
+
+    if (n < m)
+    {
+      for (int j = 0; j < max; ++j)
+      {
+        CompactTree t2 = trees2.get(j);
+        double cost = computeSDTED(null, -1, t2, t2.getRoot(), 0);
+        for (int i = n; i < max; ++i)
+          c[i][j] = cost;
+      }
+    }
+    else if (m < n)
+    {
+      for (int i = 0; i < max; ++i)
+      {
+        CompactTree t1 = trees1.get(i);
+        double cost = computeSDTED(t1, t1.getRoot(), null, -1, 0);
+        for (int j = m; j < max; ++j)
+          c[i][j] = cost;
+      }
+    }
+    return c;
+  }
+
+  /**
+   * Bounded mode of {@link #computeCompactCostMatrix(List, List)}: the matrix
+   * is initialized with lower bounds and only the entries used by the current
+   * optimal assignment are replaced by their SDTED, until the assignment only
+   * uses exact entries. This assignment is optimal for the exact matrix as
+   * well, as all other entries can only increase. To save rounds, the bounds
+   * of a refined row that are below the new exact entry are refined as well.
+   * Of several optimal assignments another one than for the full matrix may
+   * be returned. The argument requires an optimal solver, so solvers like
+   * {@link ged.alg.assignment.GreedySolver} or
+   * {@link ged.alg.assignment.AuctionSolver} are rejected.
+   *
+   * @param trees1
+   * @param trees2
+   * @return an optimal assignment between the trees
+   * @throws IllegalStateException
+   *           if the assignment solver is not optimal
+   */
+  public int[] computeBoundedAssignment(List<? extends CompactTree> trees1,
+      List<? extends CompactTree> trees2)
+  {
+    if (!solver.isOptimal()) throw new IllegalStateException(
+        "The bounded assignment requires an optimal assignment solver!");
+    workspace = AssignmentWorkspace.get();
+    int n = trees1.size();
+    int m = trees2.size();
+    int max = Math.max(n, m);
+
+    double[][] c = new double[max][max];
+    boolean[][] exact = new boolean[max][max];
+    for (int i = 0; i < n; ++i)
+    {
+      CompactTree t1 = trees1.get(i);
+      for (int j = 0; j < m; ++j)
+      {
+        CompactTree t2 = trees2.get(j);
+        if (t1.getSubtreeId(t1.getRoot()) == t2.getSubtreeId(t2.getRoot()))
+          exact[i][j] = true;// equivalent trees, the cost is 0
+        else
+          c[i][j] = lowerBound(t1, t2);
+      }
+    }
+
+    // deletions are cheap, they are computed directly
+    if (n < m)
+    {
+      for (int j = 0; j < max; ++j)
+      {
+        CompactTree t2 = trees2.get(j);
+        double cost = computeSDTED(null, -1, t2, t2.getRoot(), 0);
+        for (int i = n; i < max; ++i)
+        {
+          c[i][j] = cost;
+          exact[i][j] = true;
+        }
+      }
+    }
+    else if (m < n)
+    {
+      for (int i = 0; i < max; ++i)
+      {
+        CompactTree t1 = trees1.get(i);
+        double cost = computeSDTED(t1, t1.getRoot(), null, -1, 0);
+        for (int j = m; j < max; ++j)
+        {
+          c[i][j] = cost;
+          exact[i][j] = true;
+        }
+      }
+    }
+
+    while (true)
+    {
+      int[] assignment = solver.assignment(c);
+      boolean refined = false;
+      for (int i = 0; i < max; ++i)
+      {
+        int j = assignment[i];
+        if (exact[i][j]) continue;
+        CompactTree t1 = trees1.get(i);
+        CompactTree t2 = trees2.get(j);
+        c[i][j] = computeSDTED(t1, t1.getRoot(), t2, t2.getRoot(), 0);
+        exact[i][j] = true;
+        refined = true;
+        // entries that are now cheaper than the assigned one are candidates
+        for (int k = 0; k < m; ++k)
+          if (!exact[i][k] && c[i][k] < c[i][j])
+          {
+            CompactTree t = trees2.get(k);
+            c[i][k] = computeSDTED(t1, t1.getRoot(), t, t.getRoot(), 0);
+            exact[i][k] = true;
+          }
+      }
+      if (!refined) return assignment;
+    }
+  }
+
+  /**
+   * Every node of the unfolded trees on layer k is either substituted by a node
+   * on the same layer or deleted, so at least the difference of the layer sizes
+   * has to be deleted or inserted.
+   *
+   * @param t1
+   * @param t2
+   * @return a lower bound for the SDTED between t1 and t2
+   */
+  private double lowerBound(CompactTree t1, CompactTree t2)
+  {
+    double bound = t1.getLabel(t1.getRoot()) == t2.getLabel(t2.getRoot()) ? 0
+        : GraphDistance.VERTEX_SUBSTITUTION_COSTS;
+    double[] sizes1 = t1.getUnfoldedLayerSizes();
+    double[] sizes2 = t2.getUnfoldedLayerSizes();
+    double weight = 1;
+    for (int k = 1; k < Math.max(sizes1.length, sizes2.length); ++k)
+    {
+      weight *= layerWeightFactor;
+      double size1 = k < sizes1.length ? sizes1[k] : 0;
+      double size2 = k < sizes2.length ? sizes2[k] : 0;
+      bound += weight * Math.abs(size1 - size2)
+          * (GraphDistance.VERTEX_INSERTION_DELETION_COSTS
+              + GraphDistance.EDGE_INSERTION_DELETION_COSTS);
+    }
+    return bound;
+  }
+
   public static <V extends Vertex, E extends Edge> double[][] costMatrix(
       List<? extends Tree<V, E>> trees1, List<? extends Tree<V, E>> trees2)
   {
@@ -243,6 +540,14 @@ public class SDTEDCached
     return new SDTEDCached(layerWeightFactor).computeCostMatrix(trees1, trees2);
   }
 
+  public static <V extends Vertex, E extends Edge> double[][] costMatrix(
+      List<? extends Tree<V, E>> trees1, List<? extends Tree<V, E>> trees2,
+          double layerWeightFactor, SDTEDCostTable costMap)
+  {
+    return new SDTEDCached(layerWeightFactor, costMap)
+        .computeCostMatrix(trees1, trees2);
+  }
+
   public static <V extends Vertex, E extends Edge> int[] assignment(
       List<CTree<V, E>> trees1, List<CTree<V, E>> trees2)
   {
@@ -256,11 +561,25 @@ public class SDTEDCached
     return assignment(costMatrix(trees1, trees2, layerWeightFactor));
   }
 
-  private static double assignmentCost(double[][] C)
+  public static <V extends Vertex, E extends Edge> int[] assignment(
+      List<CTree<V, E>> trees1, List<CTree<V, E>> trees2,
+      double layerWeightFactor, SDTEDCostTable costMap)
   {
-    // VolgenantJonker vj = new VolgenantJonker(C);
-    // return vj.computeAssignment();
-    return HungarianAlgorithm.assignmentCost(C);
+    return assignment(costMatrix(trees1, trees2, layerWeightFactor, costMap));
+  }
+
+  public static int[] compactAssignment(List<? extends CompactTree> trees1,
+      List<? extends CompactTree> trees2, double layerWeightFactor)
+  {
+    return assignment(new SDTEDCached(layerWeightFactor)
+        .computeCompactCostMatrix(trees1, trees2));
+  }
+
+  public static int[] compactAssignment(List<? extends CompactTree> trees1,
+      List<? extends CompactTree> trees2, double layerWeightFactor, SDTEDCostTable costMap)
+  {
+    return assignment(new SDTEDCached(layerWeightFactor, costMap)
+        .computeCompactCostMatrix(trees1, trees2));
   }
 
   private static int[] assignment(double[][] C)
@@ -0,0 +1,204 @@
+package ged.alg.distance.tree;
+
+import java.util.Arrays;
+
+/**
+ * Bounded cost table that can be shared by many SDTED computations, e.g. by all
+ * graph pairs of a dataset. If the cache is full the least recently used entry
+ * is evicted. Entries are kept in primitive arrays: a bucket array with chained
+ * entries for the lookup and a doubly linked list for the recency order.
+ *
+ * The cached costs depend on the layer weight factor, so a cache must only be
+ * shared between computations using the same factor.
+ */
+public class SDTEDCostCache implements SDTEDCostTable
+{
+  private static final int NONE = -1;
+
+  private final int maxSize;
+  private final long[] keys;
+  private final double[] values;
+  private final int[] chainNext;
+  private final int[] lruPrev;
+  private final int[] lruNext;
+  private final int[] buckets;
+  private final int bucketMask;
+
+  private int size = 0;
+  private int head = NONE;// most recently used
+  private int tail = NONE;// least recently used
+
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  /**
+   * @param maxSize
+   *          maximum number of stored costs
+   */
+  public SDTEDCostCache(int maxSize)
+  {
+    if (maxSize <= 0)
+      throw new IllegalArgumentException("The cache size must be positive!");
+    this.maxSize = maxSize;
+    keys = new long[maxSize];
+    values = new double[maxSize];
+    chainNext = new int[maxSize];
+    lruPrev = new int[maxSize];
+    lruNext = new int[maxSize];
+    int numBuckets = Integer.highestOneBit(Math.max(2, maxSize) * 2 - 1);
+    buckets = new int[numBuckets];
+    bucketMask = numBuckets - 1;
+    Arrays.fill(buckets, NONE);
+  }
+
+  @Override
+  public double get(long key)
+  {
+    int entry = find(key);
+    if (entry == NONE)
+    {
+      ++misses;
+      return Double.NaN;
+    }
+    ++hits;
+    moveToFront(entry);
+    return values[entry];
+  }
+
+  @Override
+  public void put(long key, double cost)
+  {
+    int entry = find(key);
+    if (entry != NONE)
+    {
+      values[entry] = cost;
+      moveToFront(entry);
+      return;
+    }
+
+    if (size < maxSize)
+      entry = size++;
+    else
+    {
+      // reuse the least recently used entry
+      entry = tail;
+      unlinkFromBucket(entry);
+      unlinkFromList(entry);
+      ++evictions;
+    }
+
+    keys[entry] = key;
+    values[entry] = cost;
+    int bucket = bucket(key);
+    chainNext[entry] = buckets[bucket];
+    buckets[bucket] = entry;
+    linkAtFront(entry);
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public int getMaxSize()
+  {
+    return maxSize;
+  }
+
+  public long getHits()
+  {
+    return hits;
+  }
+
+  public long getMisses()
+  {
+    return misses;
+  }
+
+  public long getEvictions()
+  {
+    return evictions;
+  }
+
+  /**
+   * @return fraction of lookups that found a stored cost
+   */
+  public double getHitRate()
+  {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double) hits / lookups;
+  }
+
+  public void clear()
+  {
+    Arrays.fill(buckets, NONE);
+    size = 0;
+    head = tail = NONE;
+    hits = misses = evictions = 0;
+  }
+
+  @Override
+  public String toString()
+  {
+    return "SDTEDCostCache[size=" + size + "/" + maxSize + ", hits=" + hits
+        + ", misses=" + misses + ", evictions=" + evictions + "]";
+  }
+
+  private int find(long key)
+  {
+    for (int e = buckets[bucket(key)]; e != NONE; e = chainNext[e])
+      if (keys[e] == key) return e;
+    return NONE;
+  }
+
+  private int bucket(long key)
+  {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & bucketMask;
+  }
+
+  private void unlinkFromBucket(int entry)
+  {
+    int bucket = bucket(keys[entry]);
+    int e = buckets[bucket];
+    if (e == entry)
+    {
+      buckets[bucket] = chainNext[entry];
+      return;
+    }
+    while (chainNext[e] != entry)
+      e = chainNext[e];
+    chainNext[e] = chainNext[entry];
+  }
+
+  private void moveToFront(int entry)
+  {
+    if (entry == head) return;
+    unlinkFromList(entry);
+    linkAtFront(entry);
+  }
+
+  private void unlinkFromList(int entry)
+  {
+    int prev = lruPrev[entry];
+    int next = lruNext[entry];
+    if (prev == NONE)
+      head = next;
+    else
+      lruNext[prev] = next;
+    if (next == NONE)
+      tail = prev;
+    else
+      lruPrev[next] = prev;
+  }
+
+  private void linkAtFront(int entry)
+  {
+    lruPrev[entry] = NONE;
+    lruNext[entry] = head;
+    if (head != NONE) lruPrev[head] = entry;
+    head = entry;
+    if (tail == NONE) tail = entry;
+  }
+}
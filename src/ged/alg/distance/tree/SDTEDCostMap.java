@@ -0,0 +1,105 @@
+package ged.alg.distance.tree;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from packed subtree id pairs (see
+ * {@link ged.structures.tree.SubtreeInterner#pair(int, int)}) to costs. Keys
+ * and values are stored in primitive arrays, so neither lookups nor insertions
+ * box. The key 0 is reserved as empty marker, it cannot occur as pair of two
+ * distinct ids.
+ */
+public class SDTEDCostMap implements SDTEDCostTable
+{
+  private static final long EMPTY = 0;
+  private static final int DEFAULT_CAPACITY = 1 << 10;
+
+  private long[] keys;
+  private double[] values;
+  private int mask;
+  private int size;
+
+  public SDTEDCostMap()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param capacity
+   *          expected number of entries
+   */
+  public SDTEDCostMap(int capacity)
+  {
+    int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+    keys = new long[tableSize];
+    values = new double[tableSize];
+    mask = tableSize - 1;
+  }
+
+  @Override
+  public double get(long key)
+  {
+    for (int i = index(key);; i = (i + 1) & mask)
+    {
+      long k = keys[i];
+      if (k == key) return values[i];
+      if (k == EMPTY) return Double.NaN;
+    }
+  }
+
+  @Override
+  public void put(long key, double cost)
+  {
+    int i = index(key);
+    for (;; i = (i + 1) & mask)
+    {
+      long k = keys[i];
+      if (k == key)
+      {
+        values[i] = cost;
+        return;
+      }
+      if (k == EMPTY) break;
+    }
+    keys[i] = key;
+    values[i] = cost;
+    if (++size * 2 > keys.length) grow();
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public void clear()
+  {
+    Arrays.fill(keys, EMPTY);
+    size = 0;
+  }
+
+  private int index(long key)
+  {
+    // mix the bits so pairs of consecutive ids are spread over the table
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  private void grow()
+  {
+    long[] oldKeys = keys;
+    double[] oldValues = values;
+    keys = new long[oldKeys.length * 2];
+    values = new double[oldValues.length * 2];
+    mask = keys.length - 1;
+    for (int j = 0; j < oldKeys.length; ++j)
+    {
+      long key = oldKeys[j];
+      if (key == EMPTY) continue;
+      int i = index(key);
+      while (keys[i] != EMPTY)
+        i = (i + 1) & mask;
+      keys[i] = key;
+      values[i] = oldValues[j];
+    }
+  }
+}
@@ -0,0 +1,17 @@
+package ged.alg.distance.tree;
+
+/**
+ * Storage for already computed structure and depth preserving tree edit
+ * distances. Keys are pairs of subtree ids packed with
+ * {@link ged.structures.tree.SubtreeInterner#pair(int, int)}.
+ */
+public interface SDTEDCostTable
+{
+  /**
+   * @param key
+   * @return the stored cost or NaN if there is none
+   */
+  double get(long key);
+
+  void put(long key, double cost);
+}
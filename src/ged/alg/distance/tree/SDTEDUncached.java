@@ -2,7 +2,9 @@ package ged.alg.distance.tree;
 
 import java.util.List;
 
+import ged.alg.assignment.AssignmentSolver;
 import ged.alg.assignment.HungarianAlgorithm;
+import ged.alg.assignment.HungarianSolver;
 import ged.structures.graph.Edge;
 import ged.structures.graph.Vertex;
 import ged.structures.tree.CTree;
@@ -12,15 +14,27 @@ import ged.structures.tree.Tree.ChildWithEdge;
 public class SDTEDUncached
 {
   private final double layerWeightFactor;
+  private final AssignmentSolver solver;
 
   public SDTEDUncached()
   {
-    layerWeightFactor = 1;
+    this(1);
   }
 
   public SDTEDUncached(double layerWeightFactor)
+  {
+    this(layerWeightFactor, new HungarianSolver());
+  }
+
+  /**
+   * @param layerWeightFactor
+   * @param solver
+   *          solver for the assignments between children
+   */
+  public SDTEDUncached(double layerWeightFactor, AssignmentSolver solver)
   {
     this.layerWeightFactor = layerWeightFactor;
+    this.solver = solver;
   }
 
   // Structure and depth preserving tree edit distance as described in
@@ -122,7 +136,7 @@ public class SDTEDUncached
     }
 
     // solve assignment and return costs
-    return assignmentCost(c);
+    return solver.assignmentCost(c);
   }
 
   public <V extends Vertex, E extends Edge> double[][] computeCostMatrix(
@@ -197,13 +211,6 @@ public class SDTEDUncached
     return assignment(costMatrix(trees1, trees2, layerWeightFactor));
   }
 
-  private static double assignmentCost(double[][] C)
-  {
-    // VolgenantJonker vj = new VolgenantJonker(C);
-    // return vj.computeAssignment();
-    return HungarianAlgorithm.assignmentCost(C);
-  }
-
   private static int[] assignment(double[][] C)
   {
     // VolgenantJonker vj = new VolgenantJonker(C);
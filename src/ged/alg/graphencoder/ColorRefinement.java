@@ -0,0 +1,285 @@
+package ged.alg.graphencoder;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import ged.structures.graph.IndexedGraph;
+
+/**
+ * Weisfeiler-Lehman color refinement on int colors. The new color of a vertex
+ * is looked up in a {@link WLColorDictionary} from its color and the sorted
+ * colors of its neighbors, so no strings are built.
+ *
+ * The vertices are kept in color classes. The members of a class can only get
+ * different colors if one of them has a neighbor in a class that was split in
+ * the previous step, so only the vertices of such classes are looked up
+ * individually. All other classes keep their members and get their new color
+ * from a single representative.
+ */
+public class ColorRefinement
+{
+  private final IndexedGraph<?, ?> graph;
+  private final WLColorDictionary dictionary;
+  private final int n;
+
+  // the members of class k are members[classStart[k]] to
+  // members[classStart[k] + classSize[k] - 1]
+  private final int[] members;
+  private final int[] classOf;
+  private final int[] classStart;
+  private final int[] classSize;
+  private final int[] classColor;
+  private int numClasses = 0;
+  // classes split in the last step, all classes before the first step
+  private boolean[] split;
+  private boolean stable = false;
+
+  private final int[] vertexColor;
+  private final long[] sortKeys;
+  private int[] neighborColors = new int[8];
+
+  /**
+   * @param graph
+   * @param initialColors
+   *          color of every vertex, e.g. from {@link WLColorDictionary#color(String)}
+   * @param dictionary
+   *          the colors of graphs are only comparable if they use the same
+   *          dictionary
+   */
+  public ColorRefinement(IndexedGraph<?, ?> graph, int[] initialColors,
+      WLColorDictionary dictionary)
+  {
+    this.graph = graph;
+    this.dictionary = dictionary;
+    this.n = graph.getNumberOfVertices();
+    if (initialColors.length != n) throw new IllegalArgumentException(
+        "Every vertex needs an initial color!");
+    members = new int[n];
+    classOf = new int[n];
+    classStart = new int[n];
+    classSize = new int[n];
+    classColor = new int[n];
+    split = new boolean[n];
+    vertexColor = new int[n];
+    sortKeys = new long[n];
+
+    for (int v = 0; v < n; ++v)
+      sortKeys[v] = (long) initialColors[v] << 32 | v;
+    Arrays.sort(sortKeys, 0, n);
+    for (int p = 0; p < n; ++p)
+    {
+      int v = (int) sortKeys[p];
+      int color = (int) (sortKeys[p] >>> 32);
+      if (p == 0 || color != classColor[numClasses - 1])
+      {
+        classStart[numClasses] = p;
+        classColor[numClasses] = color;
+        split[numClasses++] = true;
+      }
+      members[p] = v;
+      classOf[v] = numClasses - 1;
+      ++classSize[numClasses - 1];
+    }
+    if (numClasses == n) stable = true;
+  }
+
+  /**
+   * @param graph
+   * @param labels
+   *          initial label of every vertex
+   * @param dictionary
+   */
+  public ColorRefinement(IndexedGraph<?, ?> graph, String[] labels,
+      WLColorDictionary dictionary)
+  {
+    this(graph, initialColors(labels, dictionary), dictionary);
+  }
+
+  private static int[] initialColors(String[] labels,
+      WLColorDictionary dictionary)
+  {
+    int[] colors = new int[labels.length];
+    for (int v = 0; v < labels.length; ++v)
+      colors[v] = dictionary.color(labels[v]);
+    return colors;
+  }
+
+  /**
+   * Performs one refinement step. If the partition into color classes would
+   * not change, the colors are kept.
+   *
+   * @return false if the coloring is stable or every vertex has its own color
+   */
+  public boolean refine()
+  {
+    if (stable) return false;
+
+    boolean[] touched = new boolean[numClasses];
+    for (int k = 0; k < numClasses; ++k)
+      if (split[k])
+        for (int p = classStart[k]; p < classStart[k] + classSize[k]; ++p)
+        {
+          int v = members[p];
+          for (int q = graph.getNeighborStart(v); q < graph
+              .getNeighborEnd(v); ++q)
+            touched[classOf[graph.getNeighbor(q)]] = true;
+        }
+
+    // compute all new colors before changing any class
+    int[] newColor = new int[numClasses];
+    boolean[] splits = new boolean[numClasses];
+    boolean anySplit = false;
+    for (int k = 0; k < numClasses; ++k)
+    {
+      int start = classStart[k], end = start + classSize[k];
+      newColor[k] = refinedColor(members[start]);
+      if (!touched[k]) continue;
+      for (int p = start; p < end; ++p)
+      {
+        int v = members[p];
+        vertexColor[v] = p == start ? newColor[k] : refinedColor(v);
+        if (vertexColor[v] != newColor[k]) splits[k] = anySplit = true;
+      }
+    }
+    if (!anySplit)
+    {
+      stable = true;
+      return false;
+    }
+
+    Arrays.fill(split, false);
+    int oldNumClasses = numClasses;
+    for (int k = 0; k < oldNumClasses; ++k)
+      if (!splits[k])
+        classColor[k] = newColor[k];
+      else
+        splitClass(k);
+
+    if (numClasses == n) stable = true;
+    return !stable;
+  }
+
+  /**
+   * Splits class k by the vertex colors, the first part keeps the index k.
+   */
+  private void splitClass(int k)
+  {
+    int start = classStart[k], end = start + classSize[k];
+    for (int p = start; p < end; ++p)
+      sortKeys[p] = (long) vertexColor[members[p]] << 32 | members[p];
+    Arrays.sort(sortKeys, start, end);
+
+    int current = k;
+    for (int p = start; p < end; ++p)
+    {
+      int v = (int) sortKeys[p];
+      int color = (int) (sortKeys[p] >>> 32);
+      if (p == start)
+      {
+        classColor[k] = color;
+        classSize[k] = 0;
+      }
+      else if (color != classColor[current])
+      {
+        current = numClasses++;
+        classStart[current] = p;
+        classColor[current] = color;
+        classSize[current] = 0;
+      }
+      members[p] = v;
+      classOf[v] = current;
+      ++classSize[current];
+      split[current] = true;
+    }
+  }
+
+  private int refinedColor(int v)
+  {
+    int start = graph.getNeighborStart(v);
+    int degree = graph.getNeighborEnd(v) - start;
+    if (degree > neighborColors.length)
+      neighborColors = new int[Math.max(degree, 2 * neighborColors.length)];
+    for (int i = 0; i < degree; ++i)
+      neighborColors[i] = classColor[classOf[graph.getNeighbor(start + i)]];
+    return dictionary.color(classColor[classOf[v]], neighborColors, degree);
+  }
+
+  public void fullyRefine()
+  {
+    while (refine());
+  }
+
+  /**
+   * @param refinementsteps
+   *          maximum number of refinement steps, <0: fully refine
+   */
+  public void refinementSteps(int refinementsteps)
+  {
+    if (refinementsteps < 0)
+      fullyRefine();
+    else
+      for (int i = 0; i < refinementsteps && refine(); ++i);
+  }
+
+  /**
+   * Refines the graphs of a batch step by step, e.g. with a shared
+   * dictionary so their colors are comparable.
+   *
+   * @param batch
+   * @param refinementsteps
+   *          maximum number of refinement steps, <0: until all are stable
+   */
+  public static void refine(Collection<ColorRefinement> batch,
+      int refinementsteps)
+  {
+    for (int i = 0; i != refinementsteps; ++i)
+    {
+      boolean refined = false;
+      for (ColorRefinement refinement : batch)
+        refined |= refinement.refine();
+      if (!refined) break;
+    }
+  }
+
+  public boolean isStable()
+  {
+    return stable;
+  }
+
+  public int getNumberOfClasses()
+  {
+    return numClasses;
+  }
+
+  public int getColor(int v)
+  {
+    return classColor[classOf[v]];
+  }
+
+  /**
+   * @return the color of every vertex
+   */
+  public int[] getColors()
+  {
+    int[] colors = new int[n];
+    for (int v = 0; v < n; ++v)
+      colors[v] = getColor(v);
+    return colors;
+  }
+
+  /**
+   * @return the sizes of the color classes by color, as pairs (color, size)
+   *         sorted by color
+   */
+  public int[][] getColorHistogram()
+  {
+    long[] entries = new long[numClasses];
+    for (int k = 0; k < numClasses; ++k)
+      entries[k] = (long) classColor[k] << 32 | classSize[k];
+    Arrays.sort(entries);
+    int[][] histogram = new int[numClasses][];
+    for (int k = 0; k < numClasses; ++k)
+      histogram[k] = new int[] {(int) (entries[k] >>> 32), (int) entries[k]};
+    return histogram;
+  }
+}
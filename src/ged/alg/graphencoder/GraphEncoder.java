@@ -1,10 +1,25 @@
 package ged.alg.graphencoder;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
 import org.jgrapht.graph.AbstractGraph;
 
+import ged.ForkJoinPools;
+import ged.structures.tree.Tree;
+
 public abstract class GraphEncoder<V, E>
 {
   protected final AbstractGraph<V, E> graph;
+  private int parallelism = 1;
+
   protected GraphEncoder(AbstractGraph<V, E> graph)
   {
     this.graph = graph;
@@ -12,10 +27,149 @@ public abstract class GraphEncoder<V, E>
 
   public abstract boolean refine();
 
+  /**
+   * @param parallelism
+   *          number of threads refining the independent per vertex parts of
+   *          the encoding, 1 (default) refines sequentially
+   */
+  public void setParallelism(int parallelism)
+  {
+    if (parallelism < 1)
+      throw new IllegalArgumentException("The parallelism must be positive!");
+    this.parallelism = parallelism;
+  }
+
+  public int getParallelism()
+  {
+    return parallelism;
+  }
+
+  /**
+   * Refines all elements, in a fork-join pool if the parallelism is larger
+   * than 1. The elements must not share any mutable state.
+   *
+   * @param elements
+   *          e.g. the trees of the vertices, the collection is only read
+   * @param refineElement
+   *          refines a single element, returns false if it did not change
+   * @return the elements that did not change
+   */
+  protected <T> List<T> refineAll(Collection<T> elements,
+      Predicate<T> refineElement)
+  {
+    if (parallelism == 1 || elements.size() < 2)
+    {
+      List<T> unchanged = new ArrayList<T>();
+      for (T element : elements)
+        if (!refineElement.test(element)) unchanged.add(element);
+      return unchanged;
+    }
+
+    ForkJoinPool pool = ForkJoinPools.get(parallelism);
+    try
+    {
+      return pool.submit(() -> elements.parallelStream()
+          .filter(refineElement.negate()).collect(Collectors.toList())).get();
+    }
+    catch (InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while refining", e);
+    }
+    catch (ExecutionException e)
+    {
+      throw new IllegalStateException("Refining failed", e.getCause());
+    }
+  }
+
+  /**
+   * @param sources
+   *          vertices of the graph, vertices that are no longer part of the
+   *          graph are ignored
+   * @param radius
+   *          maximum distance, <0: unbounded
+   * @return all vertices of the graph within the given distance of a source
+   */
+  protected Set<V> verticesWithinDistance(Collection<V> sources, int radius)
+  {
+    Set<V> reached = new HashSet<V>();
+    List<V> layer = new ArrayList<V>();
+    for (V v : sources)
+      if (graph.containsVertex(v) && reached.add(v)) layer.add(v);
+    for (int d = 0; d != radius && !layer.isEmpty(); ++d)
+    {
+      List<V> nextLayer = new ArrayList<V>();
+      for (V v : layer)
+        for (E e : graph.edgesOf(v))
+        {
+          V u = graph.getEdgeSource(e);
+          if (u.equals(v)) u = graph.getEdgeTarget(e);
+          if (reached.add(u)) nextLayer.add(u);
+        }
+      layer = nextLayer;
+    }
+    return reached;
+  }
+
   public void fullyRefine()
   {
     while (refine());
   }
+
+  /**
+   * Refines until a step does not split any class of the partition of the
+   * vertices by their encodings, see {@link #computeVertexPartition()}. For
+   * WL trees the partition then never changes again, as the tree of a vertex
+   * after h + 1 steps only depends on its label and the trees of its
+   * neighbors after h steps. For the other trees a later step may still split
+   * a class, so for them the partition only serves as a stopping heuristic.
+   *
+   * @param maxSteps
+   *          maximum number of refinement steps, <0: unbounded
+   * @return number of refinement steps performed
+   */
+  public int refineUntilStable(int maxSteps)
+  {
+    int numClasses = countClasses(computeVertexPartition());
+    int steps = 0;
+    while (steps != maxSteps && refine())
+    {
+      ++steps;
+      int refinedClasses = countClasses(computeVertexPartition());
+      // a step can only split classes, so the partition did not change
+      if (refinedClasses == numClasses) break;
+      numClasses = refinedClasses;
+    }
+    return steps;
+  }
+
+  /**
+   * @return an id for every vertex, two vertices have the same id iff their
+   *         current encodings are equal
+   */
+  protected abstract int[] computeVertexPartition();
+
+  /**
+   * @param trees
+   * @return the interned subtree id of the root of every tree, see
+   *         {@link Tree#computeSubtreeIdCached()}. The cached ids are kept, as
+   *         a refinement step only invalidates those of the extended subtrees.
+   */
+  protected static int[] rootSubtreeIds(List<? extends Tree<?, ?>> trees)
+  {
+    int[] ids = new int[trees.size()];
+    for (int i = 0; i < ids.length; ++i)
+      ids[i] = trees.get(i).computeSubtreeIdCached();
+    return ids;
+  }
+
+  private static int countClasses(int[] partition)
+  {
+    Set<Integer> classes = new HashSet<Integer>();
+    for (int id : partition)
+      classes.add(id);
+    return classes.size();
+  }
   /**
  * @param refinementsteps maximum number of refinement steps (possibly less if graph is smaller), <0: fully refine
  */
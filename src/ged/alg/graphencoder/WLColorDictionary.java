@@ -0,0 +1,160 @@
+package ged.alg.graphencoder;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Relabeling table of the Weisfeiler-Lehman color refinement. Every distinct
+ * initial label and every distinct combination of a color and a multiset of
+ * neighbor colors gets a unique int color. The lookups use a 64-bit multiset
+ * hash, but colors are only shared if the signatures are actually equal, so
+ * unlike String.hashCode two different signatures never get the same color.
+ *
+ * Colors of the same dictionary are comparable between graphs, e.g. all
+ * graphs of a batch or all graphs refined with the {@link #global()}
+ * dictionary. A dictionary keeps every signature it has seen, so long runs
+ * should use one dictionary per batch or {@link #clear()} the global one
+ * between batches.
+ */
+public final class WLColorDictionary
+{
+  private static final WLColorDictionary GLOBAL = new WLColorDictionary();
+
+  private static final class Signature
+  {
+    private final int color;
+    private final int[] values;
+    private final int length;
+    private final long hash;
+
+    public Signature(int color, int[] values, int length, long hash)
+    {
+      this.color = color;
+      this.values = values;
+      this.length = length;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+      // the class is private, so no instanceof check is needed
+      Signature signature = (Signature) other;
+      return hash == signature.hash && color == signature.color
+          && Arrays.equals(values, 0, length, signature.values, 0,
+              signature.length);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return (int) (hash ^ (hash >>> 32));
+    }
+  }
+
+  private final ConcurrentHashMap<String, Integer> labelColors = new ConcurrentHashMap<String, Integer>();
+  private final ConcurrentHashMap<Signature, Integer> refinedColors = new ConcurrentHashMap<Signature, Integer>();
+  private final AtomicInteger nextColor = new AtomicInteger();
+
+  /**
+   * @return the dictionary shared by all encoders that are not given another
+   *         one
+   */
+  public static WLColorDictionary global()
+  {
+    return GLOBAL;
+  }
+
+  /**
+   * @param label
+   * @return the initial color of a vertex with the given label
+   */
+  public int color(String label)
+  {
+    Integer color = labelColors.get(label);
+    if (color != null) return color;
+    return labelColors.computeIfAbsent(label,
+        l -> nextColor.getAndIncrement());
+  }
+
+  /**
+   * @param color
+   * @param neighborColors
+   *          the first length entries are the colors of the neighbors, they
+   *          are sorted in place, the array is not stored
+   * @param length
+   * @return the refined color of a vertex with the given color and neighbors
+   */
+  public int color(int color, int[] neighborColors, int length)
+  {
+    Arrays.sort(neighborColors, 0, length);
+    return lookup(color, neighborColors, length);
+  }
+
+  /**
+   * @param color
+   * @param value
+   *          non-negative number, e.g. the eccentricity of the vertex
+   * @return a color distinguishing vertices of the same color by the value, it
+   *         is different from every refined color
+   */
+  public int color(int color, int value)
+  {
+    // refined colors only have non-negative neighbor colors
+    return lookup(color, new int[] {-1 - value}, 1);
+  }
+
+  /**
+   * Removes all colors, the next color is 0 again. Colors assigned before are
+   * not comparable with later ones, so the dictionary must not be in use
+   * meanwhile.
+   */
+  public void clear()
+  {
+    labelColors.clear();
+    refinedColors.clear();
+    nextColor.set(0);
+  }
+
+  /**
+   * @return number of colors assigned so far
+   */
+  public int size()
+  {
+    return nextColor.get();
+  }
+
+  private int lookup(int color, int[] values, int length)
+  {
+    long hash = multisetHash(color, values, length);
+    Integer refined = refinedColors.get(new Signature(color, values, length,
+        hash));
+    if (refined != null) return refined;
+    // the given array may be reused by the caller, so store a copy
+    return refinedColors.computeIfAbsent(
+        new Signature(color, Arrays.copyOf(values, length), length, hash),
+        s -> nextColor.getAndIncrement());
+  }
+
+  /**
+   * @return a hash of the color and the multiset of values, it does not
+   *         depend on the order of the values
+   */
+  private static long multisetHash(int color, int[] values, int length)
+  {
+    long hash = mix(color) * 31;
+    for (int i = 0; i < length; ++i)
+      hash += mix(values[i]);
+    return hash;
+  }
+
+  // SplitMix64
+  private static long mix(long x)
+  {
+    x += 0x9E3779B97F4A7C15L;
+    x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+    x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+    return x ^ (x >>> 31);
+  }
+}
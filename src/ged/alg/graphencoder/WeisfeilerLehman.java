@@ -109,6 +109,22 @@ public class WeisfeilerLehman<V, E> extends GraphEncoder<V, E>
     return true;
   }
 
+  @Override
+  protected int[] computeVertexPartition()
+  {
+    // vertices with equal encodings have the same hash
+    Map<String, Integer> ids = new HashMap<String, Integer>();
+    int[] partition = new int[verticesToHash.size()];
+    int i = 0;
+    for (String hash : verticesToHash.values())
+    {
+      Integer id = ids.get(hash);
+      if (id == null) ids.put(hash, id = ids.size());
+      partition[i++] = id;
+    }
+    return partition;
+  }
+
   @Override
   public String computeLexicographicEncoding()
   {
@@ -1,47 +1,36 @@
 package ged.alg.graphencoder;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 
 import org.jgrapht.graph.AbstractGraph;
 
-import ged.Util;
+import ged.structures.graph.IndexedGraph;
 
 public class WeisfeilerLehmanCompressed<V, E> extends GraphEncoder<V, E>
 {
-  private final LinkedHashMap<V, Integer> verticesToHash;
-  private final LinkedHashMap<Integer, List<V>> hashToVertices;
-  private boolean refined = false;
+  private final IndexedGraph<V, E> indexedGraph;
+  private final ColorRefinement refinement;
 
   public WeisfeilerLehmanCompressed(AbstractGraph<V, E> graph)
   {
-    super(graph);
-    List<V> vertices = new ArrayList<V>(graph.vertexSet());
-    int numVertices = vertices.size();
-    verticesToHash = new LinkedHashMap<V, Integer>(numVertices);
-    hashToVertices = new LinkedHashMap<Integer, List<V>>(numVertices);
-
-    if (numVertices == 0) return;
-    vertices.sort((v1, v2) -> Integer.compare(v1.toString().hashCode(),
-        v2.toString().hashCode()));
-
-    for (V v : vertices)
-    {
-      int enc = Util.wlHash(v);
-      List<V> vertWithEnc = hashToVertices.get(enc);
-      if (vertWithEnc == null)
-        hashToVertices.put(enc, vertWithEnc = new ArrayList<V>());
-      verticesToHash.put(v, enc);
-      vertWithEnc.add(v);
-    }
+    this(graph, WLColorDictionary.global());
+  }
 
-    if (hashToVertices.size() == numVertices) refined = true;
+  /**
+   * @param graph
+   * @param dictionary
+   *          encodings are only comparable if they use the same dictionary
+   */
+  public WeisfeilerLehmanCompressed(AbstractGraph<V, E> graph,
+      WLColorDictionary dictionary)
+  {
+    super(graph);
+    indexedGraph = new IndexedGraph<V, E>(graph);
+    List<V> vertices = indexedGraph.getVertices();
+    int[] colors = new int[vertices.size()];
+    for (int v = 0; v < colors.length; ++v)
+      colors[v] = dictionary.color(vertices.get(v).toString());
+    refinement = new ColorRefinement(indexedGraph, colors, dictionary);
   }
 
   public WeisfeilerLehmanCompressed(AbstractGraph<V, E> graph, boolean refine)
@@ -53,90 +42,34 @@ public class WeisfeilerLehmanCompressed<V, E> extends GraphEncoder<V, E>
   @Override
   public boolean refine()
   {
-    if (refined) return false;
-
-    Map<String, List<V>> encodingMap = new HashMap<String, List<V>>();
-    for (Entry<V, Integer> entry : verticesToHash.entrySet())
-    {
-      V v = entry.getKey();
-      List<Integer> neighborHashes = new ArrayList<Integer>();
-      for (E e : graph.edgesOf(v))
-      {
-        V neighbor = graph.getEdgeSource(e);
-        if (neighbor.equals(v)) neighbor = graph.getEdgeTarget(e);
-        neighborHashes.add(verticesToHash.get(neighbor));
-      }
-
-      Collections.sort(neighborHashes);
-      String encodingString = entry.getValue() + neighborHashes.toString();
-
-      List<V> verticesWithEncoding = encodingMap.get(encodingString);
-      if (verticesWithEncoding == null) encodingMap.put(encodingString,
-          verticesWithEncoding = new ArrayList<V>());
-      verticesWithEncoding.add(v);
-    }
-
-    if (!checkChanged(encodingMap.values()))
-    {
-      refined = true;
-      return false;
-    }
-
-    List<Entry<String, List<V>>> entryList = new ArrayList<>(
-        encodingMap.entrySet());
-    entryList.sort((e1, e2) -> e1.getKey().compareTo(e2.getKey()));
-
-    verticesToHash.clear();
-    hashToVertices.clear();
+    return refinement.refine();
+  }
 
-    for (Entry<String, List<V>> entry : entryList)
-    {
-      int enc = Util.wlHash(entry.getKey());
-      List<V> verticesWithHash = entry.getValue();
-      hashToVertices.put(enc, verticesWithHash);
-      for (V vertexWithHash : verticesWithHash)
-        verticesToHash.put(vertexWithHash, enc);
-    }
+  /**
+   * @param v
+   * @return the current color of the vertex
+   */
+  public int getColor(V v)
+  {
+    return refinement.getColor(indexedGraph.getIndex(v));
+  }
 
-    if (hashToVertices.size() == verticesToHash.size())
-    {
-      refined = true;
-      return false;
-    }
-    return true;
+  @Override
+  protected int[] computeVertexPartition()
+  {
+    // the colors are unique for the whole unfolding tree of a vertex
+    return refinement.getColors();
   }
 
   @Override
   public String computeLexicographicEncoding()
   {
-
+    // the colors are unique for the whole unfolding tree of a vertex, so the
+    // encodings of graphs refined with the same dictionary are comparable
     StringBuilder encoding = new StringBuilder();
-    for (Entry<Integer, List<V>> entry : hashToVertices.entrySet())
-      encoding.append(entry.getKey() + ":" + entry.getValue().size() + " ");
-    // TODO: The encoding does not really reflect the structure of the graph.
-    // Only the original vertex label of the vertices is used for the encoding.
-    // TODO: If we compared the encodings of two graph, they might be the same.
-    // Either we have to refine the two graphs simultaneously or use the labels
-    // of the neighbors (and their neighbors and so on) in the encoding.
-
+    for (int[] entry : refinement.getColorHistogram())
+      encoding.append(entry[0] + ":" + entry[1] + " ");
     return encoding.toString();
   }
 
-  private boolean checkChanged(Collection<List<V>> groups)
-  {
-    for (List<V> vertexGroup : groups)
-    {
-      int groupSize = vertexGroup.size();
-      if (groupSize == 0) continue;
-
-      Integer hash = verticesToHash.get(vertexGroup.get(0));
-      for (int i = 1; i < groupSize; ++i)
-        if (!hash.equals(verticesToHash.get(vertexGroup.get(i))))//
-          return true;
-      if (hashToVertices.get(hash).size() != groupSize)//
-        return true;
-    }
-    return false;
-  }
-
 }
@@ -0,0 +1,199 @@
+package ged.alg.graphencoder.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jgrapht.graph.AbstractGraph;
+
+import ged.structures.graph.Edge;
+import ged.structures.graph.IndexedGraph;
+import ged.structures.tree.ArrayTree;
+import ged.structures.tree.SubtreeInterner;
+
+/**
+ * Builds the trees of {@link KNeighborhoodTree} for all vertices directly as
+ * {@link ArrayTree}s. A vertex first reached on layer d is added to the layers
+ * d to d + k, so k = 0 gives the trees of {@link NeighborhoodTreeV1} and k = 1
+ * those of {@link NeighborhoodTreeV2}.
+ *
+ * Instead of a depth map and jgrapht tree per root, the vertices are ints of an
+ * {@link IndexedGraph}, the depths are stored in an int array and the next
+ * layer is collected with a bitset. All of them are reused for every root and
+ * only reset at the touched entries, so building the trees of a large graph
+ * allocates little more than the resulting arrays.
+ */
+public class IndexedKNeighborhoodTrees<V, E extends Edge>
+{
+  private final IndexedGraph<V, E> graph;
+  private final int k;
+  private final int[] vertexLabels;
+  private final int[] edgeLabels;
+
+  // reused for every root
+  private final int[] depth;
+  private final long[] nextLayer;
+  private final int[] nodeOf;
+  private final IntList reached = new IntList();
+  private final IntList labels = new IntList();
+  private final IntList childOffsets = new IntList();
+  private final IntList children = new IntList();
+  private final IntList childEdgeLabels = new IntList();
+  private final IntList layerOffsets = new IntList();
+  private IntList frontier = new IntList();
+  private IntList next = new IntList();
+
+  private final List<ArrayTree> trees;
+
+  /**
+   * @param graph
+   * @param k
+   *          number of additional layers a vertex is repeated on
+   * @param refinementsteps
+   *          maximum number of refinement steps, i.e. the height of the trees,
+   *          <0: fully refine
+   */
+  public IndexedKNeighborhoodTrees(AbstractGraph<V, E> graph, int k,
+      int refinementsteps)
+  {
+    this.graph = new IndexedGraph<V, E>(graph);
+    this.k = k;
+    int n = this.graph.getNumberOfVertices();
+    vertexLabels = SubtreeInterner.vertexLabelIds(this.graph);
+    edgeLabels = SubtreeInterner.edgeLabelIds(this.graph);
+
+    depth = new int[n];
+    Arrays.fill(depth, -1);
+    nextLayer = new long[(n + 63) >>> 6];
+    nodeOf = new int[n];
+    List<ArrayTree> built = new ArrayList<ArrayTree>(n);
+    for (int root = 0; root < n; ++root)
+      built.add(build(root, refinementsteps));
+    trees = Collections.unmodifiableList(built);
+  }
+
+  /**
+   * @return the vertices of the graph in the order of the trees
+   */
+  public List<V> getVertices()
+  {
+    return graph.getVertices();
+  }
+
+  /**
+   * @return the trees of all vertices, in the order of {@link #getVertices()}
+   */
+  public List<ArrayTree> getCompactTreeRepresentations()
+  {
+    return trees;
+  }
+
+  private ArrayTree build(int root, int maxLayer)
+  {
+    labels.clear();
+    childOffsets.clear();
+    children.clear();
+    childEdgeLabels.clear();
+    layerOffsets.clear();
+    frontier.clear();
+
+    depth[root] = 0;
+    reached.add(root);
+    labels.add(vertexLabels[root]);
+    layerOffsets.add(0);
+    frontier.add(root);
+    for (int layer = 0; !frontier.isEmpty(); ++layer)
+    {
+      // the nodes of the next layer follow the nodes of this layer
+      int nextStart = labels.size();
+      boolean expand = layer != maxLayer;
+      for (int i = 0; i < frontier.size(); ++i)
+      {
+        int v = frontier.get(i);
+        childOffsets.add(children.size());
+        if (!expand) continue;
+        for (int p = graph.getNeighborStart(v); p < graph
+            .getNeighborEnd(v); ++p)
+        {
+          // like the trees, only the first edge between two vertices is used
+          if (graph.isParallel(p)) continue;
+          int u = graph.getNeighbor(p);
+          if (depth[u] < 0)
+          {
+            depth[u] = layer + 1;
+            reached.add(u);
+          }
+          else if (layer + 1 > depth[u] + k) continue;
+
+          if ((nextLayer[u >>> 6] & (1L << u)) == 0)
+          {
+            nextLayer[u >>> 6] |= 1L << u;
+            nodeOf[u] = next.size();
+            next.add(u);
+            labels.add(vertexLabels[u]);
+          }
+          children.add(nextStart + nodeOf[u]);
+          childEdgeLabels.add(edgeLabels[p]);
+        }
+      }
+
+      for (int i = 0; i < next.size(); ++i)
+        nextLayer[next.get(i) >>> 6] = 0;
+      if (!next.isEmpty()) layerOffsets.add(nextStart);
+      IntList swap = frontier;
+      frontier = next;
+      next = swap;
+      next.clear();
+    }
+    childOffsets.add(children.size());
+    layerOffsets.add(labels.size());
+
+    for (int i = 0; i < reached.size(); ++i)
+      depth[reached.get(i)] = -1;
+    reached.clear();
+
+    return new ArrayTree(labels.toArray(), childOffsets.toArray(),
+        children.toArray(), childEdgeLabels.toArray(), layerOffsets.toArray());
+  }
+
+  /**
+   * Growable int array.
+   */
+  private static final class IntList
+  {
+    private int[] values = new int[16];
+    private int size = 0;
+
+    private void add(int value)
+    {
+      if (size == values.length) values = Arrays.copyOf(values, 2 * size);
+      values[size++] = value;
+    }
+
+    private int get(int i)
+    {
+      return values[i];
+    }
+
+    private int size()
+    {
+      return size;
+    }
+
+    private boolean isEmpty()
+    {
+      return size == 0;
+    }
+
+    private void clear()
+    {
+      size = 0;
+    }
+
+    private int[] toArray()
+    {
+      return Arrays.copyOf(values, size);
+    }
+  }
+}
@@ -14,6 +14,7 @@ import org.jgrapht.graph.DefaultDirectedGraph;
 import ged.alg.graphencoder.GraphEncoder;
 import ged.structures.graph.Edge;
 import ged.structures.graph.VertexWrapper;
+import ged.structures.tree.ArrayTree;
 import ged.structures.tree.CTree;
 
 public class KNeighborhoodTree<V, E extends Edge> extends GraphEncoder<V, E> {
@@ -63,6 +64,14 @@ public class KNeighborhoodTree<V, E extends Edge> extends GraphEncoder<V, E> {
 	    return trees;
 	  }
 
+	  /**
+	   * @return compact copies of the current trees, see {@link ArrayTree}
+	   */
+	  public List<ArrayTree> getCompactTreeRepresentations()
+	  {
+	    return ArrayTree.of(trees);
+	  }
+
 	  @Override
 	  public boolean refine()
 	  {
@@ -141,4 +150,19 @@ public class KNeighborhoodTree<V, E extends Edge> extends GraphEncoder<V, E> {
 	    return encoding.toString();
 	  }
 
+	  /**
+	   * @return compact counterpart of {@link #computeLexicographicEncoding()},
+	   *         see {@link CTree#computeCanonicalEncoding(Collection)}
+	   */
+	  public int[] computeCanonicalEncoding()
+	  {
+	    return CTree.computeCanonicalEncoding(trees);
+	  }
+
+	  @Override
+	  protected int[] computeVertexPartition()
+	  {
+	    return rootSubtreeIds(trees);
+	  }
+
 }
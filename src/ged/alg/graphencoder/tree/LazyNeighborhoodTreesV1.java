@@ -0,0 +1,236 @@
+package ged.alg.graphencoder.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jgrapht.graph.AbstractGraph;
+
+import ged.structures.graph.Edge;
+import ged.structures.graph.IndexedGraph;
+import ged.structures.tree.CompactTree;
+import ged.structures.tree.SubtreeInterner;
+
+/**
+ * The trees of {@link NeighborhoodTreeV1} as lazy views of the graph. The tree
+ * of a root contains every vertex within the given distance, the children of a
+ * vertex are its neighbors one BFS layer further away. So instead of building
+ * the trees, every view only stores the BFS depth of the vertices and computes
+ * the children on demand from the adjacency of the graph.
+ *
+ * The nodes of a view are the vertex indices of the graph, its child positions
+ * are the neighbor positions of {@link IndexedGraph}, and neighbors that are no
+ * children are gaps. A view needs O(n) memory instead of the O(n + m) objects
+ * and copied edges of a materialized tree, and the subtree ids are the same as
+ * for the compact copies of the trees of NeighborhoodTreeV1.
+ */
+public class LazyNeighborhoodTreesV1<V, E extends Edge>
+{
+  private final IndexedGraph<V, E> graph;
+  private final int height;
+  private final int[] labels;
+  private final int[] edgeLabels;
+  private final int[] owners;
+  private final List<CompactTree> trees;
+
+  /**
+   * @param graph
+   * @param height
+   *          number of refinement steps, i.e. the maximum depth of the trees,
+   *          <0: fully refined
+   */
+  public LazyNeighborhoodTreesV1(AbstractGraph<V, E> graph, int height)
+  {
+    this.graph = new IndexedGraph<V, E>(graph);
+    this.height = height;
+    int n = this.graph.getNumberOfVertices();
+    labels = SubtreeInterner.vertexLabelIds(this.graph);
+    edgeLabels = SubtreeInterner.edgeLabelIds(this.graph);
+    owners = new int[edgeLabels.length];
+    for (int v = 0; v < n; ++v)
+      for (int p = this.graph.getNeighborStart(v); p < this.graph
+          .getNeighborEnd(v); ++p)
+        owners[p] = v;
+    List<CompactTree> views = new ArrayList<CompactTree>(n);
+    for (int v = 0; v < n; ++v)
+      views.add(new View(v));
+    trees = Collections.unmodifiableList(views);
+  }
+
+  /**
+   * @return the vertices of the graph in the order of the trees
+   */
+  public List<V> getVertices()
+  {
+    return graph.getVertices();
+  }
+
+  /**
+   * @return the tree of every vertex, in the order of {@link #getVertices()}
+   */
+  public List<CompactTree> getTrees()
+  {
+    return trees;
+  }
+
+  /**
+   * BFS of a root, computed on first use. A race only computes it twice.
+   */
+  private static final class Layers
+  {
+    // -1: not part of the tree
+    private final int[] depth;
+    private final int[] subtreeIds;
+    private final int[] numChildren;
+    private final double[] unfoldedLayerSizes;
+
+    private Layers(int[] depth, int[] subtreeIds, int[] numChildren,
+        double[] unfoldedLayerSizes)
+    {
+      this.depth = depth;
+      this.subtreeIds = subtreeIds;
+      this.numChildren = numChildren;
+      this.unfoldedLayerSizes = unfoldedLayerSizes;
+    }
+  }
+
+  private final class View implements CompactTree
+  {
+    private final int root;
+    private Layers layers = null;
+
+    private View(int root)
+    {
+      this.root = root;
+    }
+
+    private Layers layers()
+    {
+      Layers current = layers;
+      if (current == null) layers = current = explore();
+      return current;
+    }
+
+    private Layers explore()
+    {
+      int n = labels.length;
+      int[] depth = new int[n];
+      Arrays.fill(depth, -1);
+      int[] order = new int[n];
+      int size = 0;
+      depth[root] = 0;
+      order[size++] = root;
+      for (int i = 0; i < size; ++i)
+      {
+        int v = order[i];
+        if (depth[v] == height) continue;
+        for (int p = graph.getNeighborStart(v); p < graph
+            .getNeighborEnd(v); ++p)
+        {
+          int u = graph.getNeighbor(p);
+          if (depth[u] >= 0) continue;
+          depth[u] = depth[v] + 1;
+          order[size++] = u;
+        }
+      }
+
+      // children have larger depths, so they come later in BFS order
+      int[] subtreeIds = new int[n];
+      int[] numChildren = new int[n];
+      for (int i = size - 1; i >= 0; --i)
+      {
+        int v = order[i];
+        int count = 0;
+        for (int p = graph.getNeighborStart(v); p < graph
+            .getNeighborEnd(v); ++p)
+          if (isChild(depth, p)) ++count;
+        long[] children = new long[count];
+        int c = 0;
+        for (int p = graph.getNeighborStart(v); p < graph
+            .getNeighborEnd(v); ++p)
+          if (isChild(depth, p)) children[c++] = SubtreeInterner
+              .child(edgeLabels[p], subtreeIds[graph.getNeighbor(p)]);
+        numChildren[v] = count;
+        subtreeIds[v] = SubtreeInterner.subtreeId(labels[v], children);
+      }
+
+      int maxDepth = depth[order[size - 1]];
+      double[] paths = new double[n];
+      double[] sizes = new double[maxDepth + 1];
+      paths[root] = 1;
+      for (int i = 0; i < size; ++i)
+      {
+        int v = order[i];
+        sizes[depth[v]] += paths[v];
+        for (int p = graph.getNeighborStart(v); p < graph
+            .getNeighborEnd(v); ++p)
+          if (isChild(depth, p)) paths[graph.getNeighbor(p)] += paths[v];
+      }
+      return new Layers(depth, subtreeIds, numChildren, sizes);
+    }
+
+    private boolean isChild(int[] depth, int position)
+    {
+      int owner = depth[owners[position]];
+      // like the trees, a view keeps only the first edge to every child
+      return !graph.isParallel(position) && owner >= 0
+          && depth[graph.getNeighbor(position)] == owner + 1;
+    }
+
+    @Override
+    public int getRoot()
+    {
+      return root;
+    }
+
+    @Override
+    public int getLabel(int node)
+    {
+      return labels[node];
+    }
+
+    @Override
+    public int getSubtreeId(int node)
+    {
+      return layers().subtreeIds[node];
+    }
+
+    @Override
+    public int getNumberOfChildren(int node)
+    {
+      return layers().numChildren[node];
+    }
+
+    @Override
+    public int getChildStart(int node)
+    {
+      return graph.getNeighborStart(node);
+    }
+
+    @Override
+    public int getChildEnd(int node)
+    {
+      return graph.getNeighborEnd(node);
+    }
+
+    @Override
+    public int getChild(int position)
+    {
+      return isChild(layers().depth, position) ? graph.getNeighbor(position)
+          : -1;
+    }
+
+    @Override
+    public int getChildEdgeLabel(int position)
+    {
+      return edgeLabels[position];
+    }
+
+    @Override
+    public double[] getUnfoldedLayerSizes()
+    {
+      return layers().unfoldedLayerSizes;
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package ged.alg.graphencoder.tree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang3.NotImplementedException;
+import org.jgrapht.graph.AbstractGraph;
+
+import ged.structures.graph.Edge;
+import ged.structures.graph.IndexedGraph;
+import ged.structures.tree.ArrayTree;
+import ged.structures.tree.SubtreeInterner;
+
+/**
+ * The trees of {@link NeighborhoodTreeWL} stored as views of one shared DAG.
+ * The tree of a vertex after h steps is built from the trees of its neighbors
+ * after h - 1 steps, so instead of storing every tree separately the DAG has
+ * one node per vertex and layer: node (v, l) stands for the subtree of v with
+ * h - l layers below it and its children are the nodes (u, l + 1) of the
+ * neighbors u of v. The tree of v is the part of the DAG reachable from
+ * (v, 0).
+ *
+ * This needs O((n + m) * h) memory instead of up to O(n * (n + m) * h) for the
+ * separate trees. Equal subtrees have the same interned id, so SDTED costs
+ * cached for a node are shared by all trees containing it. The views have the
+ * same subtree ids as the compact copies of the trees of NeighborhoodTreeWL.
+ */
+public class NeighborhoodForestWL<V, E extends Edge>
+{
+  private final List<V> vertices;
+  private final ArrayTree forest;
+  private final List<ArrayTree> trees;
+
+  /**
+   * @param graph
+   * @param steps
+   *          number of refinement steps, i.e. the height of the trees
+   */
+  public NeighborhoodForestWL(AbstractGraph<V, E> graph, int steps)
+  {
+    if (steps < 0) throw new NotImplementedException(
+        "This WL implementation cannot automatically fully refine.");
+    IndexedGraph<V, E> indexed = new IndexedGraph<V, E>(graph);
+    vertices = indexed.getVertices();
+    int n = vertices.size();
+    if (n == 0)
+    {
+      forest = null;
+      trees = Collections.emptyList();
+      return;
+    }
+
+    // the children of a vertex are the same on every layer except the last
+    int[] vertexLabels = SubtreeInterner.vertexLabelIds(indexed);
+    int[] edgeLabels = SubtreeInterner.edgeLabelIds(indexed);
+    int numNeighbors = 0;
+    for (int p = 0; p < edgeLabels.length; ++p)
+      if (!indexed.isParallel(p)) ++numNeighbors;
+
+    int numNodes = n * (steps + 1);
+    int numChildren = numNeighbors * steps;
+    int[] labels = new int[numNodes];
+    int[] childOffsets = new int[numNodes + 1];
+    int[] children = new int[numChildren];
+    int[] childEdgeLabels = new int[numChildren];
+    int[] layerOffsets = new int[steps + 2];
+    int c = 0;
+    for (int l = 0; l <= steps; ++l)
+    {
+      layerOffsets[l] = l * n;
+      for (int i = 0; i < n; ++i)
+      {
+        int node = l * n + i;
+        labels[node] = vertexLabels[i];
+        childOffsets[node] = c;
+        if (l == steps) continue;
+        for (int p = indexed.getNeighborStart(i); p < indexed
+            .getNeighborEnd(i); ++p)
+        {
+          // like the trees, the DAG keeps only one edge to every child
+          if (indexed.isParallel(p)) continue;
+          children[c] = (l + 1) * n + indexed.getNeighbor(p);
+          childEdgeLabels[c++] = edgeLabels[p];
+        }
+      }
+    }
+    childOffsets[numNodes] = c;
+    layerOffsets[steps + 1] = numNodes;
+
+    forest = ArrayTree.forest(labels, childOffsets, children, childEdgeLabels,
+        layerOffsets);
+    List<ArrayTree> views = new ArrayList<ArrayTree>(n);
+    for (int i = 0; i < n; ++i)
+      views.add(forest.withRoot(i));
+    trees = Collections.unmodifiableList(views);
+  }
+
+  /**
+   * @return the vertices of the graph in the order of the trees
+   */
+  public List<V> getVertices()
+  {
+    return vertices;
+  }
+
+  /**
+   * @return the shared DAG, the root of the tree of the i-th vertex is node i,
+   *         null if the graph has no vertices
+   */
+  public ArrayTree getForest()
+  {
+    return forest;
+  }
+
+  /**
+   * @return the trees of all vertices as views of the shared DAG, in the order
+   *         of {@link #getVertices()}
+   */
+  public List<ArrayTree> getCompactTreeRepresentations()
+  {
+    return trees;
+  }
+}
@@ -0,0 +1,315 @@
+package ged.alg.graphencoder.tree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.jgrapht.graph.AbstractGraph;
+
+import ged.structures.graph.Edge;
+import ged.structures.tree.ArrayTree;
+import ged.structures.tree.SubtreeInterner;
+
+/**
+ * Neighborhood trees of all graphs of a dataset, each graph is encoded only
+ * once. The trees are kept as {@link ArrayTree}s and can be written to a
+ * binary file, so they can also be reused by later runs on the same dataset.
+ *
+ * @param <V>
+ * @param <E>
+ */
+public class NeighborhoodTreeIndex<V, E extends Edge>
+{
+  private static final int MAGIC = 0x4E545849;// NTXI
+  private static final int VERSION = 1;
+
+  public enum Type
+  {
+    V1, V2, WL,
+    /**
+     * k-neighborhood trees, the number of iterations is used as k and the
+     * trees are fully refined
+     */
+    K
+  }
+
+  /**
+   * The precomputed trees of a single graph.
+   */
+  public static class Trees<V, E extends Edge>
+  {
+    private final AbstractGraph<V, E> graph;
+    private final Type type;
+    private final int iterations;
+    private final List<ArrayTree> trees;
+    private final List<V> vertices;
+
+    public Trees(AbstractGraph<V, E> graph, Type type, int iterations,
+        List<ArrayTree> trees, List<V> vertices)
+    {
+      if (trees.size() != vertices.size())
+        throw new IllegalArgumentException("Every tree needs a vertex!");
+      this.graph = graph;
+      this.type = type;
+      this.iterations = iterations;
+      this.trees = Collections.unmodifiableList(trees);
+      this.vertices = Collections.unmodifiableList(vertices);
+    }
+
+    public AbstractGraph<V, E> getGraph()
+    {
+      return graph;
+    }
+
+    public Type getType()
+    {
+      return type;
+    }
+
+    /**
+     * @return number of refinement steps, <0: fully refined
+     */
+    public int getIterations()
+    {
+      return iterations;
+    }
+
+    public List<ArrayTree> getTrees()
+    {
+      return trees;
+    }
+
+    /**
+     * @return the vertex of the graph belonging to each tree, in the order of
+     *         the trees
+     */
+    public List<V> getVertices()
+    {
+      return vertices;
+    }
+  }
+
+  private final Type type;
+  private final int iterations;
+  private final List<Trees<V, E>> entries;
+
+  /**
+   * @param graphs
+   * @param type
+   * @param iterations
+   *          number of refinement steps, <0: fully refine
+   */
+  public NeighborhoodTreeIndex(List<? extends AbstractGraph<V, E>> graphs,
+      Type type, int iterations)
+  {
+    this.type = type;
+    this.iterations = iterations;
+    this.entries = new ArrayList<Trees<V, E>>(graphs.size());
+    for (AbstractGraph<V, E> g : graphs)
+    {
+      List<V> vertices = new ArrayList<V>();
+      List<ArrayTree> trees = trees(type, g, iterations, vertices);
+      entries.add(new Trees<V, E>(g, type, iterations, trees, vertices));
+    }
+  }
+
+  private NeighborhoodTreeIndex(Type type, int iterations,
+      List<Trees<V, E>> entries)
+  {
+    this.type = type;
+    this.iterations = iterations;
+    this.entries = entries;
+  }
+
+  /**
+   * @param type
+   * @param g
+   * @param iterations
+   *          number of refinement steps, <0: fully refine
+   * @param vertices
+   *          the vertex of g belonging to each tree is added, in the order of
+   *          the trees
+   * @return the compact neighborhood trees of g
+   */
+  public static <V, E extends Edge> List<ArrayTree> trees(Type type,
+      AbstractGraph<V, E> g, int iterations, List<V> vertices)
+  {
+    switch (type)
+    {
+      case V1:
+        // same trees as NeighborhoodTreeV1 and NeighborhoodTreeV2, built
+        // directly on the vertex indices
+        return indexedTrees(g, 0, iterations, vertices);
+      case V2:
+        return indexedTrees(g, 1, iterations, vertices);
+      case WL:
+        // same trees as NeighborhoodTreeWL, but sharing their nodes
+        NeighborhoodForestWL<V, E> wl = new NeighborhoodForestWL<V, E>(g,
+            iterations);
+        vertices.addAll(wl.getVertices());
+        return wl.getCompactTreeRepresentations();
+      case K:
+        return indexedTrees(g, iterations, -1, vertices);
+      default:
+        throw new IllegalArgumentException("Unknown tree type " + type);
+    }
+  }
+
+  private static <V, E extends Edge> List<ArrayTree> indexedTrees(
+      AbstractGraph<V, E> g, int k, int iterations, List<V> vertices)
+  {
+    IndexedKNeighborhoodTrees<V, E> trees = new IndexedKNeighborhoodTrees<V, E>(
+        g, k, iterations);
+    vertices.addAll(trees.getVertices());
+    return trees.getCompactTreeRepresentations();
+  }
+
+  public Type getType()
+  {
+    return type;
+  }
+
+  public int getIterations()
+  {
+    return iterations;
+  }
+
+  public int size()
+  {
+    return entries.size();
+  }
+
+  /**
+   * @param i
+   * @return the trees of the i-th graph
+   */
+  public Trees<V, E> get(int i)
+  {
+    return entries.get(i);
+  }
+
+  /**
+   * Writes the trees to a binary file. The graphs are not stored, the roots
+   * of the trees refer to the positions of the vertices in the vertex sets.
+   *
+   * @param path
+   * @throws IOException
+   */
+  public void write(String path) throws IOException
+  {
+    // all labels used, the ids are only valid in this process
+    TreeMap<Integer, String> labels = new TreeMap<Integer, String>();
+    for (Trees<V, E> entry : entries)
+      for (ArrayTree tree : entry.getTrees())
+        for (int v = 0; v < tree.getNumberOfNodes(); ++v)
+        {
+          labels.put(tree.getLabel(v),
+              SubtreeInterner.label(tree.getLabel(v)));
+          for (int c = tree.getChildStart(v); c < tree.getChildEnd(v); ++c)
+            labels.put(tree.getChildEdgeLabel(c),
+                SubtreeInterner.label(tree.getChildEdgeLabel(c)));
+        }
+
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(path))))
+    {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(type.name());
+      out.writeInt(iterations);
+      out.writeInt(labels.size());
+      for (Map.Entry<Integer, String> label : labels.entrySet())
+      {
+        out.writeInt(label.getKey());
+        out.writeUTF(label.getValue());
+      }
+      out.writeInt(entries.size());
+      for (Trees<V, E> entry : entries)
+      {
+        Map<V, Integer> positions = vertexPositions(entry.getGraph());
+        out.writeInt(positions.size());
+        out.writeInt(entry.getTrees().size());
+        for (int t = 0; t < entry.getTrees().size(); ++t)
+        {
+          out.writeInt(positions.get(entry.getVertices().get(t)));
+          entry.getTrees().get(t).write(out);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param path
+   *          file written by {@link #write(String)}
+   * @param graphs
+   *          the graphs the index was built for, in the same order
+   * @return the index stored in the file
+   * @throws IOException
+   */
+  public static <V, E extends Edge> NeighborhoodTreeIndex<V, E> read(
+      String path, List<? extends AbstractGraph<V, E>> graphs)
+      throws IOException
+  {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(new FileInputStream(path))))
+    {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION)
+        throw new IOException("Not a neighborhood tree index: " + path);
+      Type type = Type.valueOf(in.readUTF());
+      int iterations = in.readInt();
+
+      Map<Integer, Integer> labelMap = new HashMap<Integer, Integer>();
+      int maxId = -1;
+      int numLabels = in.readInt();
+      for (int l = 0; l < numLabels; ++l)
+      {
+        int id = in.readInt();
+        labelMap.put(id, SubtreeInterner.labelId(in.readUTF()));
+        maxId = Math.max(maxId, id);
+      }
+      int[] labelIds = new int[maxId + 1];
+      for (Map.Entry<Integer, Integer> label : labelMap.entrySet())
+        labelIds[label.getKey()] = label.getValue();
+
+      int numGraphs = in.readInt();
+      if (numGraphs != graphs.size()) throw new IOException(
+          "The index contains " + numGraphs + " graphs, but "
+              + graphs.size() + " were given!");
+      List<Trees<V, E>> entries = new ArrayList<Trees<V, E>>(numGraphs);
+      for (AbstractGraph<V, E> g : graphs)
+      {
+        List<V> vertexList = new ArrayList<V>(g.vertexSet());
+        if (in.readInt() != vertexList.size()) throw new IOException(
+            "The graphs do not match the index!");
+        int numTrees = in.readInt();
+        List<ArrayTree> trees = new ArrayList<ArrayTree>(numTrees);
+        List<V> vertices = new ArrayList<V>(numTrees);
+        for (int t = 0; t < numTrees; ++t)
+        {
+          vertices.add(vertexList.get(in.readInt()));
+          trees.add(ArrayTree.read(in, labelIds));
+        }
+        entries.add(new Trees<V, E>(g, type, iterations, trees, vertices));
+      }
+      return new NeighborhoodTreeIndex<V, E>(type, iterations, entries);
+    }
+  }
+
+  private static <V> Map<V, Integer> vertexPositions(AbstractGraph<V, ?> g)
+  {
+    Map<V, Integer> positions = new HashMap<V, Integer>();
+    for (V v : g.vertexSet())
+      positions.put(v, positions.size());
+    return positions;
+  }
+}
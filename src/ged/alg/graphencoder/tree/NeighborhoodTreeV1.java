@@ -3,20 +3,28 @@ package ged.alg.graphencoder.tree;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.jgrapht.graph.AbstractGraph;
 import org.jgrapht.graph.DefaultDirectedGraph;
 
 import ged.alg.graphencoder.GraphEncoder;
 import ged.structures.graph.Edge;
+import ged.structures.tree.ArrayTree;
 import ged.structures.tree.CTree;
 
 public class NeighborhoodTreeV1<V, E extends Edge> extends GraphEncoder<V, E>
 {
   private final List<CTree<V, Edge>> trees = new ArrayList<CTree<V, Edge>>();
   private final HashSet<CTree<V, Edge>> unrefinedTrees;
+  // number of refinement steps that extended at least one tree
+  private int steps = 0;
+  // number of requested refinement steps, <0: fully refined
+  private int refinementBound = 0;
 
   public NeighborhoodTreeV1(AbstractGraph<V, E> graph)
   {
@@ -45,25 +53,122 @@ public class NeighborhoodTreeV1<V, E extends Edge> extends GraphEncoder<V, E>
     refinementSteps(refinementsteps);
   }
 
+  /**
+   * @param graph
+   * @param refinementsteps
+   *          maximum number of refinement steps (possibly less if graph is
+   *          smaller), <0: fully refine
+   * @param parallelism
+   *          number of threads refining the trees
+   */
+  public NeighborhoodTreeV1(AbstractGraph<V, E> graph, int refinementsteps,
+      int parallelism)
+  {
+    this(graph);
+    setParallelism(parallelism);
+    refinementSteps(refinementsteps);
+  }
+
   public List<CTree<V, Edge>> getCurrentTreeRepresentations()
   {
     return trees;
   }
 
+  /**
+   * @return compact copies of the current trees, see {@link ArrayTree}
+   */
+  public List<ArrayTree> getCompactTreeRepresentations()
+  {
+    return ArrayTree.of(trees);
+  }
+
+  @Override
+  public void refinementSteps(int refinementsteps)
+  {
+    // the trees may be done before, but rebuilt trees may need all steps
+    int bound = refinementsteps < 0 || refinementBound < 0 ? -1
+        : refinementBound + refinementsteps;
+    super.refinementSteps(refinementsteps);
+    refinementBound = bound;
+  }
+
+  @Override
+  public void fullyRefine()
+  {
+    super.fullyRefine();
+    refinementBound = -1;
+  }
+
   @Override
   public boolean refine()
   {
+    if (refinementBound >= 0) ++refinementBound;
     if (unrefinedTrees.isEmpty()) return false;
 
-    List<CTree<V, Edge>> doneTrees = new ArrayList<CTree<V, Edge>>();
-    for (CTree<V, Edge> tree : unrefinedTrees)
-      if (!refineTree(tree)) doneTrees.add(tree);
+    // the trees only read the graph, so they can be refined in parallel
+    List<CTree<V, Edge>> doneTrees = refineAll(unrefinedTrees,
+        this::refineTree);
+    if (doneTrees.size() < unrefinedTrees.size()) ++steps;
 
     unrefinedTrees.removeAll(doneTrees);
 
     return !unrefinedTrees.isEmpty();
   }
 
+  /**
+   * Updates the trees after the graph was edited. Only the trees whose root is
+   * within the current tree height of a changed vertex are rebuilt, all other
+   * trees and their cached encodings are kept. The rebuilt trees are refined
+   * with the requested number of refinement steps, or fully if the trees were
+   * fully refined, so they are the same as those of a new encoder.
+   *
+   * @param changedVertices
+   *          the vertices whose label or incident edges changed, including
+   *          added vertices and the former neighbors of removed vertices
+   */
+  public void update(Collection<V> changedVertices)
+  {
+    Set<V> affected = verticesWithinDistance(changedVertices, steps);
+    Map<V, CTree<V, Edge>> kept = new HashMap<V, CTree<V, Edge>>();
+    for (CTree<V, Edge> tree : trees)
+      if (graph.containsVertex(tree.getRoot())
+          && !affected.contains(tree.getRoot()))
+        kept.put(tree.getRoot(), tree);
+      else
+        unrefinedTrees.remove(tree);
+
+    trees.clear();
+    List<CTree<V, Edge>> rebuilt = new ArrayList<CTree<V, Edge>>();
+    for (V v : graph.vertexSet())
+    {
+      CTree<V, Edge> tree = kept.get(v);
+      if (tree == null)
+      {
+        tree = new CTree<V, Edge>(
+            new DefaultDirectedGraph<V, Edge>(Edge.class), v);
+        rebuilt.add(tree);
+      }
+      trees.add(tree);
+    }
+    List<CTree<V, Edge>> doneTrees = refineAll(rebuilt, this::rebuildTree);
+    unrefinedTrees.addAll(rebuilt);
+    unrefinedTrees.removeAll(doneTrees);
+    // an edit may have made the rebuilt trees higher
+    for (CTree<V, Edge> tree : rebuilt)
+      steps = Math.max(steps, tree.getMaxLayer());
+  }
+
+  /**
+   * @return false if the tree was fully refined within the requested number
+   *         of refinement steps
+   */
+  private boolean rebuildTree(CTree<V, Edge> tree)
+  {
+    for (int i = 0; i != refinementBound; ++i)
+      if (!refineTree(tree)) return false;
+    return true;
+  }
+
   private boolean refineTree(CTree<V, Edge> tree)
   {
     int curMaxLayer = tree.getMaxLayer();
@@ -105,4 +210,19 @@ public class NeighborhoodTreeV1<V, E extends Edge> extends GraphEncoder<V, E>
 
     return encoding.toString();
   }
+
+  /**
+   * @return compact counterpart of {@link #computeLexicographicEncoding()},
+   *         see {@link CTree#computeCanonicalEncoding(Collection)}
+   */
+  public int[] computeCanonicalEncoding()
+  {
+    return CTree.computeCanonicalEncoding(trees);
+  }
+
+  @Override
+  protected int[] computeVertexPartition()
+  {
+    return rootSubtreeIds(trees);
+  }
 }
@@ -3,8 +3,10 @@ package ged.alg.graphencoder.tree;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.jgrapht.graph.AbstractGraph;
 import org.jgrapht.graph.DefaultDirectedGraph;
@@ -97,6 +99,22 @@ GraphEncoder<V, E>
     return true;
   }
 
+  @Override
+  protected int[] computeVertexPartition()
+  {
+    // the subtree ids ignore the cliques, so compare the full encodings
+    Map<String, Integer> ids = new HashMap<String, Integer>();
+    int[] partition = new int[trees.size()];
+    for (int i = 0; i < partition.length; ++i)
+    {
+      String encoding = trees.get(i).computeLexicographicEncoding();
+      Integer id = ids.get(encoding);
+      if (id == null) ids.put(encoding, id = ids.size());
+      partition[i] = id;
+    }
+    return partition;
+  }
+
   @Override
   public String computeLexicographicEncoding()
   {
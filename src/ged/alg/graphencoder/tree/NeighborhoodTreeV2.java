@@ -14,6 +14,7 @@ import org.jgrapht.graph.DefaultDirectedGraph;
 import ged.alg.graphencoder.GraphEncoder;
 import ged.structures.graph.Edge;
 import ged.structures.graph.VertexWrapper;
+import ged.structures.tree.ArrayTree;
 import ged.structures.tree.CTree;
 
 public class NeighborhoodTreeV2<V, E extends Edge> extends GraphEncoder<V, E>
@@ -56,20 +57,44 @@ public class NeighborhoodTreeV2<V, E extends Edge> extends GraphEncoder<V, E>
     refinementSteps(refinementsteps);
   }
 
+  /**
+   * @param graph
+   * @param refinementsteps
+   *          maximum number of refinement steps (possibly less if graph is
+   *          smaller), <0: fully refine
+   * @param parallelism
+   *          number of threads refining the trees
+   */
+  public NeighborhoodTreeV2(AbstractGraph<V, E> graph, int refinementsteps,
+      int parallelism)
+  {
+    this(graph);
+    setParallelism(parallelism);
+    refinementSteps(refinementsteps);
+  }
+
   public List<CTree<VertexWrapper<V>, Edge>> getCurrentTreeRepresentations()
   {
     return trees;
   }
 
+  /**
+   * @return compact copies of the current trees, see {@link ArrayTree}
+   */
+  public List<ArrayTree> getCompactTreeRepresentations()
+  {
+    return ArrayTree.of(trees);
+  }
+
   @Override
   public boolean refine()
   {
     if (unrefinedTrees.isEmpty()) return false;
 
-    List<CTree<VertexWrapper<V>, Edge>> doneTrees = new ArrayList<CTree<VertexWrapper<V>, Edge>>();
-
-    for (CTree<VertexWrapper<V>, Edge> tree : unrefinedTrees)
-      if (!refineTree(tree, depthMaps.get(tree))) doneTrees.add(tree);
+    // every tree has its own depth map and only reads the graph, so the trees
+    // can be refined in parallel
+    List<CTree<VertexWrapper<V>, Edge>> doneTrees = refineAll(unrefinedTrees,
+        tree -> refineTree(tree, depthMaps.get(tree)));
 
     unrefinedTrees.removeAll(doneTrees);
 
@@ -139,4 +164,19 @@ public class NeighborhoodTreeV2<V, E extends Edge> extends GraphEncoder<V, E>
     return encoding.toString();
   }
 
+  /**
+   * @return compact counterpart of {@link #computeLexicographicEncoding()},
+   *         see {@link CTree#computeCanonicalEncoding(Collection)}
+   */
+  public int[] computeCanonicalEncoding()
+  {
+    return CTree.computeCanonicalEncoding(trees);
+  }
+
+  @Override
+  protected int[] computeVertexPartition()
+  {
+    return rootSubtreeIds(trees);
+  }
+
 }
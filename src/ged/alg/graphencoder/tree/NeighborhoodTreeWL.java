@@ -6,6 +6,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang3.NotImplementedException;
 import org.jgrapht.graph.AbstractGraph;
@@ -14,11 +15,13 @@ import org.jgrapht.graph.DefaultDirectedGraph;
 import ged.alg.graphencoder.GraphEncoder;
 import ged.structures.graph.Edge;
 import ged.structures.graph.VertexWrapper;
+import ged.structures.tree.ArrayTree;
 import ged.structures.tree.CTree;
 
 public class NeighborhoodTreeWL<V, E extends Edge> extends GraphEncoder<V, E>
 {
   private final List<CTree<VertexWrapper<V>, Edge>> trees = new ArrayList<CTree<VertexWrapper<V>, Edge>>();
+  private int steps = 0;
 
   public NeighborhoodTreeWL(AbstractGraph<V, E> graph)
   {
@@ -35,23 +38,88 @@ public class NeighborhoodTreeWL<V, E extends Edge> extends GraphEncoder<V, E>
     refinementSteps(steps);
   }
 
+  /**
+   * @param graph
+   * @param steps
+   * @param parallelism
+   *          number of threads refining the trees
+   */
+  public NeighborhoodTreeWL(AbstractGraph<V, E> graph, int steps,
+      int parallelism)
+  {
+    this(graph);
+    setParallelism(parallelism);
+    refinementSteps(steps);
+  }
+
   public List<CTree<VertexWrapper<V>, Edge>> getCurrentTreeRepresentations()
   {
     return trees;
   }
 
+  /**
+   * @return compact copies of the current trees, see {@link ArrayTree}
+   */
+  public List<ArrayTree> getCompactTreeRepresentations()
+  {
+    return ArrayTree.of(trees);
+  }
+
   @Override
   public boolean refine()
   {
     if (trees.isEmpty()) return false; // This is only possible if graph has no
     // vertices
 
-    for (CTree<VertexWrapper<V>, Edge> tree : trees)
-      refineTree(tree);
+    // the trees only read the graph, so they can be refined in parallel
+    refineAll(trees, this::refineTree);
+    ++steps;
 
     return !trees.isEmpty();
   }
 
+  /**
+   * Updates the trees after the graph was edited. Only the trees whose root is
+   * within the current tree height of a changed vertex are rebuilt with the
+   * same number of refinement steps, all other trees and their cached
+   * encodings are kept.
+   *
+   * @param changedVertices
+   *          the vertices whose label or incident edges changed, including
+   *          added vertices and the former neighbors of removed vertices
+   */
+  public void update(Collection<V> changedVertices)
+  {
+    Set<V> affected = verticesWithinDistance(changedVertices, steps);
+    Map<V, CTree<VertexWrapper<V>, Edge>> kept = new HashMap<V, CTree<VertexWrapper<V>, Edge>>();
+    for (CTree<VertexWrapper<V>, Edge> tree : trees)
+    {
+      V root = tree.getRoot().getObject();
+      if (graph.containsVertex(root) && !affected.contains(root))
+        kept.put(root, tree);
+    }
+
+    trees.clear();
+    List<CTree<VertexWrapper<V>, Edge>> rebuilt = new ArrayList<CTree<VertexWrapper<V>, Edge>>();
+    for (V v : graph.vertexSet())
+    {
+      CTree<VertexWrapper<V>, Edge> tree = kept.get(v);
+      if (tree == null)
+      {
+        tree = new CTree<VertexWrapper<V>, Edge>(
+            new DefaultDirectedGraph<VertexWrapper<V>, Edge>(Edge.class),
+            new VertexWrapper<V>(v));
+        rebuilt.add(tree);
+      }
+      trees.add(tree);
+    }
+    refineAll(rebuilt, tree -> {
+      for (int i = 0; i < steps; ++i)
+        refineTree(tree);
+      return true;
+    });
+  }
+
   private boolean refineTree(CTree<VertexWrapper<V>, Edge> tree)
   {
     int curMaxLayer = tree.getMaxLayer();
@@ -101,6 +169,21 @@ public class NeighborhoodTreeWL<V, E extends Edge> extends GraphEncoder<V, E>
     return encoding.toString();
   }
 
+  /**
+   * @return compact counterpart of {@link #computeLexicographicEncoding()},
+   *         see {@link CTree#computeCanonicalEncoding(Collection)}
+   */
+  public int[] computeCanonicalEncoding()
+  {
+    return CTree.computeCanonicalEncoding(trees);
+  }
+
+  @Override
+  protected int[] computeVertexPartition()
+  {
+    return rootSubtreeIds(trees);
+  }
+
   @Override
   public void fullyRefine()
   {
@@ -122,6 +122,21 @@ GraphEncoder<V, E>
     return encoding.toString();
   }
 
+  /**
+   * @return compact counterpart of {@link #computeLexicographicEncoding()},
+   *         see {@link CTree#computeCanonicalEncoding(Collection)}
+   */
+  public int[] computeCanonicalEncoding()
+  {
+    return CTree.computeCanonicalEncoding(trees);
+  }
+
+  @Override
+  protected int[] computeVertexPartition()
+  {
+    return rootSubtreeIds(trees);
+  }
+
   @Override
   public void fullyRefine()
   {
@@ -6,6 +6,8 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Locale;
 import java.util.Random;
 
@@ -13,13 +15,16 @@ import org.jgrapht.alg.util.Pair;
 
 import ged.Util;
 import ged.alg.distance.GraphDistance;
+import ged.alg.distance.SDTEDbasedDistance;
 import ged.alg.distance.SDTEDbasedDistanceV1;
 import ged.alg.distance.SDTEDbasedDistanceV2;
 import ged.alg.distance.SDTEDbasedDistanceWL;
 import ged.alg.distance.comparison.BSSExactGraphEditDistance;
+import ged.alg.distance.comparison.BeamSearchDistance;
 import ged.alg.distance.comparison.BipartiteGraphMatching;
 import ged.alg.distance.comparison.SubgraphMatching;
 import ged.alg.distance.comparison.WalksMatching;
+import ged.alg.distance.comparison.beamsearch.IndexedBeamSearch;
 import ged.structures.graph.LabeledEdge;
 import ged.structures.graph.LabeledVertex;
 import ged.structures.graph.PGraph;
@@ -31,6 +36,12 @@ public class GEDExperiments {
 	//, "PTC_FM","Letter-med", "proteincom_sampled","MSRC_9","NCI1"
 	static String[] datasets = {"MUTAG"}; //, "PTC_FM", "Letter-med", "proteincom_sampled"};
 	static String [] dss = {};//"MSRC_9","NCI1"
+	/**
+	 * time budget in ms of every beam search based method per dataset and
+	 * experiment, after it the searches return their best edit path found so
+	 * far, <0: unlimited
+	 */
+	static long timeBudget = -1;
   public static void main(String[] args)
       throws IOException, InterruptedException
   {
@@ -63,24 +74,32 @@ public class GEDExperiments {
 	    dists.add(d);
 	    names.add(d.getID());
 	    
+	    // the SDTED distances for all depths are computed in a single pass
+	    ArrayList<SDTEDbasedDistance[]> sweeps = new ArrayList<SDTEDbasedDistance[]>();
+	    SDTEDbasedDistance[] sweep = new SDTEDbasedDistance[10];
 	    for (int i = 1; i <= 10; i++)
 	    {
-	        d=new SDTEDbasedDistanceV1(i, 0.5);
+	        d=sweep[i - 1]=new SDTEDbasedDistanceV1(i, 0.5);
 	        dists.add(d);
 	        names.add(d.getID());
 	    }
+	    sweeps.add(sweep);
+	    sweep = new SDTEDbasedDistance[10];
 	    for (int i = 1; i <= 10; i++)
 	    {
-	    	d=new SDTEDbasedDistanceV2(i, 0.5);
+	    	d=sweep[i - 1]=new SDTEDbasedDistanceV2(i, 0.5);
 	        dists.add(d);
 	        names.add(d.getID());
 	    }
+	    sweeps.add(sweep);
+	    sweep = new SDTEDbasedDistance[10];
 	    for (int i = 1; i <= 10; i++)
 	    {
-	    	d=new SDTEDbasedDistanceWL(i, 0.5);
+	    	d=sweep[i - 1]=new SDTEDbasedDistanceWL(i, 0.5);
 	        dists.add(d);
 	        names.add(d.getID());
 	    }
+	    sweeps.add(sweep);
 	    
 	    for (int i = 1; i <= 10; i++)
 	    {	
@@ -89,7 +108,7 @@ public class GEDExperiments {
 	    	names.add(d.getID());
 	    }
 	    
-	    for (int i = 1; i <= 2; i++) //TODO: implement time out?
+	    for (int i = 1; i <= 2; i++) // limited by timeBudget
 	    {
 	    	 d=new SubgraphMatching(i);
 	    	 dists.add(d);
@@ -116,7 +135,7 @@ public class GEDExperiments {
 	    for(String ds: datasets)
 	    {
 	    	System.out.println(ds);
-	    	approximationExperiment(dspath, path, ds, dists, names);
+	    	approximationExperiment(dspath, path, ds, dists, names, sweeps);
 	    	writeResultsApproximationError(ds, path, d.getID(), names);
 	    }
 	    
@@ -135,7 +154,7 @@ public class GEDExperiments {
 	    for(String ds: dss)
 	    {
 	    	System.out.println(ds);
-	    	approximationExperiment(dspath, path, ds, dists, names);
+	    	approximationExperiment(dspath, path, ds, dists, names, sweeps);
 	    	writeResultsApproximationError(ds, path, new BipartiteGraphMatching().getID(), names);
 	    }
 	    
@@ -149,12 +168,31 @@ public class GEDExperiments {
   }
   
   public static void approximationExperiment(String dsPath, String path, String dsName, ArrayList<GraphDistance> dists, ArrayList<String> distanceNames) throws IOException
+  {
+	  approximationExperiment(dsPath, path, dsName, dists, distanceNames, new ArrayList<SDTEDbasedDistance[]>());
+  }
+
+  /**
+   * @param sweeps
+   *          SDTED distances for the iterations 1 to k, each sweep is computed
+   *          in a single pass with the distance for k iterations
+   */
+  public static void approximationExperiment(String dsPath, String path, String dsName, ArrayList<GraphDistance> dists, ArrayList<String> distanceNames, ArrayList<SDTEDbasedDistance[]> sweeps) throws IOException
   {
 	  ArrayList<PGraph<LabeledVertex, LabeledEdge>> ds = Util.readTUDataset(dsPath, dsName);
 	  ArrayList<Pair<Integer, Integer>> pairs = readPairs(path, dsName);
+	  HashSet<GraphDistance> swept = new HashSet<GraphDistance>();
+	  for(SDTEDbasedDistance[] sweep: sweeps)
+	  {
+		  computeAndWriteDistances(path, dsName, sweep, ds, pairs);
+		  swept.addAll(Arrays.asList(sweep));
+	  }
 	  for(int i = 0; i<distanceNames.size(); i++)
 	  {
-		  computeAndWriteDistances(path, dsName, dists.get(i), ds, pairs);
+		  if(!swept.contains(dists.get(i)))
+		  {
+			  computeAndWriteDistances(path, dsName, dists.get(i), ds, pairs);
+		  }
 	  }
   }
   public static void runtimeExperiment(String dsPath, String path, String dsName, ArrayList<GraphDistance> dists, ArrayList<String> distanceNames) throws IOException, InterruptedException
@@ -173,14 +211,77 @@ public class GEDExperiments {
 			throws IOException {
 		BufferedWriter rwriter = new BufferedWriter(
 				new FileWriter(path + "/" + dsname + "_" + distance.getID() + ".txt"));
+		startTimeBudget(distance);
 		for (Pair<Integer, Integer> pair : pairs) {
 			double dist = distance.computeGraphDistance(ds.get(pair.getFirst()), ds.get(pair.getSecond()));
 			rwriter.write(pair.getFirst() + " " + pair.getSecond() + " " + dist);
 			rwriter.newLine();
 			rwriter.flush();
 		}
+		endTimeBudget(distance);
 		rwriter.close();
   }
+
+  /**
+   * @return the beam search of the distance, null if it does not use one
+   */
+  private static IndexedBeamSearch beamSearch(GraphDistance distance)
+  {
+	  if (distance instanceof SubgraphMatching)
+		  return ((SubgraphMatching) distance).getBeamSearch();
+	  if (distance instanceof BeamSearchDistance)
+		  return ((BeamSearchDistance<?, ?>) distance).getBeamSearch();
+	  return null;
+  }
+
+  /**
+   * Sets the deadline of the beam searches of the distance to now + timeBudget.
+   */
+  private static void startTimeBudget(GraphDistance distance)
+  {
+	  IndexedBeamSearch search = beamSearch(distance);
+	  if (search == null || timeBudget < 0)
+		  return;
+	  search.resetNumberOfExpiredSearches();
+	  search.setDeadline(System.nanoTime() + timeBudget * 1000000);
+  }
+
+  private static void endTimeBudget(GraphDistance distance)
+  {
+	  IndexedBeamSearch search = beamSearch(distance);
+	  if (search == null || timeBudget < 0)
+		  return;
+	  search.setDeadline(Long.MAX_VALUE);
+	  if (search.getNumberOfExpiredSearches() > 0)
+		  System.out.println(distance.getID() + ": " + search.getNumberOfExpiredSearches()
+				  + " searches stopped, upper bounds used");
+  }
+  
+  /**
+   * Writes the results of sweep[i] (i + 1 iterations) to the same files as
+   * computeAndWriteDistances for the single distances.
+   */
+  public static void computeAndWriteDistances(String path, String dsname, SDTEDbasedDistance[] sweep,
+			ArrayList<PGraph<LabeledVertex, LabeledEdge>> ds, ArrayList<Pair<Integer, Integer>> pairs)
+			throws IOException {
+		BufferedWriter[] rwriters = new BufferedWriter[sweep.length];
+		for (int i = 0; i < sweep.length; i++) {
+			rwriters[i] = new BufferedWriter(
+					new FileWriter(path + "/" + dsname + "_" + sweep[i].getID() + ".txt"));
+		}
+		SDTEDbasedDistance deepest = sweep[sweep.length - 1];
+		for (Pair<Integer, Integer> pair : pairs) {
+			double[] dists = deepest.computeGraphDistances(ds.get(pair.getFirst()), ds.get(pair.getSecond()), sweep.length);
+			for (int i = 0; i < sweep.length; i++) {
+				rwriters[i].write(pair.getFirst() + " " + pair.getSecond() + " " + dists[i]);
+				rwriters[i].newLine();
+				rwriters[i].flush();
+			}
+		}
+		for (BufferedWriter rwriter : rwriters) {
+			rwriter.close();
+		}
+  }
   
   public static ArrayList<Double> readResults(String path, String dsname, String distanceName) throws NumberFormatException, IOException
   {
@@ -279,6 +380,10 @@ public class GEDExperiments {
 			double averagetime = 0;
 			for (int i = 0; i < 5; i++) // runtime average over 5 runs
 			{
+				// every run has to compute its graphlet distances
+				if (distance instanceof SubgraphMatching)
+					((SubgraphMatching) distance).clearSharedCache();
+				startTimeBudget(distance);
 				fulltime = 0;
 				for (Pair<Integer, Integer> pair : pairs) {
 					long timeStart = System.nanoTime();
@@ -287,6 +392,7 @@ public class GEDExperiments {
 					long time = timeEnd - timeStart;
 					fulltime += time;
 				}
+				endTimeBudget(distance);
 
 				// convert to millis
 				fulltime = fulltime / 1000000;
@@ -2,6 +2,7 @@ package ged.app;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 
 import org.jgrapht.graph.AbstractGraph;
 
@@ -32,13 +33,19 @@ public class IsomorphismExperiment
     	  dsabs.add(g);
       }
       
-      for (PGraph<LabeledVertex, LabeledEdge> graph : ds)
+      // every graph is encoded once, the pairs are compared by their classes
+      int[] wlcClass = classIds(TestIsomorphic.classesWLCompressed(dsabs), ds.size());
+      int[] wlClass = classIds(TestIsomorphic.classesWL(dsabs), ds.size());
+      int[] v1Class = classIds(TestIsomorphic.classesIterativeV1(dsabs), ds.size());
+      for (int i = 0; i < ds.size(); ++i)
       {
-		for(PGraph<LabeledVertex, LabeledEdge> graph2 :ds)
+    	PGraph<LabeledVertex, LabeledEdge> graph = ds.get(i);
+		for (int j = 0; j < ds.size(); ++j)
 		{
-			boolean wlc = TestIsomorphic.isomorphicWLCompressed(graph, graph2);
-			boolean wl = TestIsomorphic.isomorphicWL(graph, graph2);
-			boolean v1 = TestIsomorphic.isomorphicIterativeV1(graph, graph2);
+			PGraph<LabeledVertex, LabeledEdge> graph2 = ds.get(j);
+			boolean wlc = wlcClass[i] == wlcClass[j];
+			boolean wl = wlClass[i] == wlClass[j];
+			boolean v1 = v1Class[i] == v1Class[j];
 			if(wlc != wl)
 			{
 				System.out.println("wlc and wl not equal "+ graph.getProperty("index") + " " + graph2.getProperty("index")+ " wl: "+wl + " wlc:"+wlc);
@@ -58,8 +65,19 @@ public class IsomorphismExperiment
 		}
     	  
       }
-
     }
     System.out.println("finished!");
   }
+
+  /**
+   * @return the index of the class of every graph
+   */
+  private static int[] classIds(List<List<Integer>> classes, int size)
+  {
+	  int[] ids = new int[size];
+	  for (int c = 0; c < classes.size(); ++c)
+		  for (int i : classes.get(c))
+			  ids[i] = c;
+	  return ids;
+  }
 }
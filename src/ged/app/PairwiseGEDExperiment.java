@@ -8,16 +8,22 @@ import org.jgrapht.graph.AbstractGraph;
 import ged.Util;
 import ged.WritePairwiseGED;
 import ged.alg.distance.GraphDistance;
+import ged.alg.distance.SDTEDbasedDistance;
 import ged.alg.distance.SDTEDbasedDistanceV1;
 import ged.alg.distance.SDTEDbasedDistanceV2;
 import ged.alg.distance.SDTEDbasedDistanceWL;
 import ged.alg.distance.comparison.BipartiteGraphMatching;
+import ged.alg.distance.tree.ConcurrentSDTEDCostCache;
 import ged.structures.graph.LabeledEdge;
 import ged.structures.graph.LabeledVertex;
 import ged.structures.graph.PGraph;
 
 public class PairwiseGEDExperiment
 {
+  // maximum number of subtree pair costs kept per dataset and distance
+  private static final int CACHE_SIZE = 1 << 20;
+  private static final int PARALLELISM = Runtime.getRuntime()
+      .availableProcessors();
 
   public static void main(String[] args) throws IOException
   {
@@ -45,7 +51,20 @@ public class PairwiseGEDExperiment
       }
       for (GraphDistance distance : dists)
       {
-        WritePairwiseGED.writePairwiseGED(dsabs, distance, path, dataset);
+        ConcurrentSDTEDCostCache cache = null;
+        if (distance instanceof SDTEDbasedDistance)
+        {
+          // reuse subtree costs across all pairs of the dataset and threads
+          cache = new ConcurrentSDTEDCostCache(CACHE_SIZE);
+          ((SDTEDbasedDistance) distance).setSharedCache(cache);
+        }
+        WritePairwiseGED.writePairwiseGED(dsabs, distance, path, dataset,
+            PARALLELISM);
+        if (cache != null)
+        {
+          System.out.println(distance.getID() + " " + cache);
+          ((SDTEDbasedDistance) distance).setSharedCache(null);
+        }
       }
     }
   }
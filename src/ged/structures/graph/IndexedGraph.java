@@ -0,0 +1,154 @@
+package ged.structures.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jgrapht.graph.AbstractGraph;
+
+/**
+ * Immutable int based copy of the adjacency structure of a graph. The vertices
+ * are numbered 0 to n - 1 in the order of the vertex set, and the neighbors of
+ * every vertex are stored in compressed sparse row format together with the
+ * edge leading to them. A loop is a neighbor of its own vertex. Parallel edges
+ * give a neighbor several positions, all but the first one are marked, see
+ * {@link #isParallel(int)}.
+ *
+ * @param <V>
+ * @param <E>
+ */
+public final class IndexedGraph<V, E>
+{
+  private final List<V> vertices;
+  private final Map<V, Integer> index;
+  private final int[] neighborOffsets;
+  private final int[] neighbors;
+  private final List<E> edges;
+  private final boolean[] parallel;
+
+  public IndexedGraph(AbstractGraph<V, E> graph)
+  {
+    int n = graph.vertexSet().size();
+    List<V> vertexList = new ArrayList<V>(graph.vertexSet());
+    index = new HashMap<V, Integer>(2 * n);
+    for (V v : vertexList)
+      index.put(v, index.size());
+
+    neighborOffsets = new int[n + 1];
+    List<E> edgeList = new ArrayList<E>();
+    for (int i = 0; i < n; ++i)
+    {
+      neighborOffsets[i] = edgeList.size();
+      edgeList.addAll(graph.edgesOf(vertexList.get(i)));
+    }
+    neighborOffsets[n] = edgeList.size();
+
+    neighbors = new int[edgeList.size()];
+    parallel = new boolean[edgeList.size()];
+    int[] addedBy = new int[n];
+    Arrays.fill(addedBy, -1);
+    for (int i = 0; i < n; ++i)
+    {
+      V v = vertexList.get(i);
+      for (int p = neighborOffsets[i]; p < neighborOffsets[i + 1]; ++p)
+      {
+        E e = edgeList.get(p);
+        V u = graph.getEdgeSource(e);
+        if (u.equals(v)) u = graph.getEdgeTarget(e);
+        int j = index.get(u);
+        neighbors[p] = j;
+        parallel[p] = addedBy[j] == i;
+        addedBy[j] = i;
+      }
+    }
+    vertices = Collections.unmodifiableList(vertexList);
+    edges = Collections.unmodifiableList(edgeList);
+  }
+
+  public int getNumberOfVertices()
+  {
+    return vertices.size();
+  }
+
+  /**
+   * @return the vertices in the order of their indices
+   */
+  public List<V> getVertices()
+  {
+    return vertices;
+  }
+
+  public V getVertex(int v)
+  {
+    return vertices.get(v);
+  }
+
+  /**
+   * @param vertex
+   * @return the index of the vertex, null if it is not part of the graph
+   */
+  public Integer getIndex(V vertex)
+  {
+    return index.get(vertex);
+  }
+
+  public int getDegree(int v)
+  {
+    return neighborOffsets[v + 1] - neighborOffsets[v];
+  }
+
+  /**
+   * @param v
+   * @return first neighbor position of v, see {@link #getNeighbor(int)}
+   */
+  public int getNeighborStart(int v)
+  {
+    return neighborOffsets[v];
+  }
+
+  /**
+   * @param v
+   * @return position after the last neighbor of v
+   */
+  public int getNeighborEnd(int v)
+  {
+    return neighborOffsets[v + 1];
+  }
+
+  /**
+   * @param position
+   *          neighbor position between getNeighborStart(v) and
+   *          getNeighborEnd(v) - 1
+   * @return index of the neighbor
+   */
+  public int getNeighbor(int position)
+  {
+    return neighbors[position];
+  }
+
+  /**
+   * @param position
+   *          neighbor position between getNeighborStart(v) and
+   *          getNeighborEnd(v) - 1
+   * @return the edge to the neighbor
+   */
+  public E getEdge(int position)
+  {
+    return edges.get(position);
+  }
+
+  /**
+   * @param position
+   *          neighbor position between getNeighborStart(v) and
+   *          getNeighborEnd(v) - 1
+   * @return true if an earlier position of v leads to the same neighbor, the
+   *         neighborhood trees only keep the first edge to a neighbor
+   */
+  public boolean isParallel(int position)
+  {
+    return parallel[position];
+  }
+}
@@ -0,0 +1,497 @@
+package ged.structures.tree;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact immutable tree stored in primitive arrays (compressed sparse row
+ * format). Nodes are numbered layer by layer starting with the root 0, so the
+ * children of a node always have larger indices than the node itself. As in
+ * {@link CTree} a node may have several parents on the previous layer.
+ *
+ * Vertex and edge labels are stored as ids of {@link SubtreeInterner}, and
+ * every node knows the interned id of the subtree rooted at it.
+ *
+ * The arrays can also store a forest whose first layer contains several roots,
+ * see {@link #forest(int[], int[], int[], int[], int[])}. The trees of the
+ * forest are views sharing the arrays, they only differ in their root. Node
+ * indices and layers always refer to the whole arrays, so the nodes of a layer
+ * are not necessarily part of the tree of a view. Costs computed
+ * on this representation assume the label based uniform cost model of
+ * LabeledVertex, VertexWrapper and LabeledEdge (two labels have distance 0 iff
+ * they are equal).
+ *
+ * An ArrayTree has no gaps between the children of a node.
+ */
+public final class ArrayTree implements CompactTree
+{
+  private final int[] labels;
+  private final int[] childOffsets;
+  private final int[] children;
+  private final int[] childEdgeLabels;
+  private final int[] layerOffsets;
+  private final int[] subtreeIds;
+  private final int root;
+  private double[] unfoldedLayerSizes = null;
+
+  /**
+   * @param labels
+   *          label id of every node
+   * @param childOffsets
+   *          children of node v are stored at positions childOffsets[v] to
+   *          childOffsets[v + 1] - 1, length number of nodes + 1
+   * @param children
+   *          node index of every child position
+   * @param childEdgeLabels
+   *          label id of the edge to every child position
+   * @param layerOffsets
+   *          nodes of layer l are layerOffsets[l] to layerOffsets[l + 1] - 1,
+   *          length number of layers + 1
+   */
+  public ArrayTree(int[] labels, int[] childOffsets, int[] children,
+      int[] childEdgeLabels, int[] layerOffsets)
+  {
+    this(labels, childOffsets, children, childEdgeLabels, layerOffsets, false);
+  }
+
+  private ArrayTree(int[] labels, int[] childOffsets, int[] children,
+      int[] childEdgeLabels, int[] layerOffsets, boolean forest)
+  {
+    int numNodes = labels.length;
+    if (childOffsets.length != numNodes + 1
+        || childOffsets[numNodes] != children.length
+        || children.length != childEdgeLabels.length)
+      throw new IllegalArgumentException("Inconsistent tree arrays!");
+    if (numNodes == 0 || layerOffsets.length < 2 || layerOffsets[0] != 0
+        || (forest ? layerOffsets[1] < 1 : layerOffsets[1] != 1)
+        || layerOffsets[layerOffsets.length - 1] != numNodes)
+      throw new IllegalArgumentException(forest
+          ? "The first layer has to contain the roots!"
+              : "The first layer has to contain exactly the root!");
+
+    this.labels = labels;
+    this.childOffsets = childOffsets;
+    this.children = children;
+    this.childEdgeLabels = childEdgeLabels;
+    this.layerOffsets = layerOffsets;
+    this.subtreeIds = new int[numNodes];
+    this.root = 0;
+
+    // bottom up, children always have a larger index than their parents
+    for (int v = numNodes - 1; v >= 0; --v)
+    {
+      int start = childOffsets[v];
+      long[] childIds = new long[childOffsets[v + 1] - start];
+      for (int c = 0; c < childIds.length; ++c)
+      {
+        int child = children[start + c];
+        if (child <= v) throw new IllegalArgumentException(
+            "Children have to be on a later layer than their parents!");
+        childIds[c] = SubtreeInterner.child(childEdgeLabels[start + c],
+            subtreeIds[child]);
+      }
+      subtreeIds[v] = SubtreeInterner.subtreeId(labels[v], childIds);
+    }
+  }
+
+  /**
+   * @param forest
+   * @param root
+   *          the view shares all arrays with the forest
+   */
+  private ArrayTree(ArrayTree forest, int root)
+  {
+    this.labels = forest.labels;
+    this.childOffsets = forest.childOffsets;
+    this.children = forest.children;
+    this.childEdgeLabels = forest.childEdgeLabels;
+    this.layerOffsets = forest.layerOffsets;
+    this.subtreeIds = forest.subtreeIds;
+    this.root = root;
+  }
+
+  /**
+   * Same as the constructor, but the first layer may contain several roots.
+   *
+   * @return the tree of the first root, see {@link #withRoot(int)} for the
+   *         others
+   */
+  public static ArrayTree forest(int[] labels, int[] childOffsets,
+      int[] children, int[] childEdgeLabels, int[] layerOffsets)
+  {
+    return new ArrayTree(labels, childOffsets, children, childEdgeLabels,
+        layerOffsets, true);
+  }
+
+  /**
+   * @param root
+   *          a node of the first layer
+   * @return the tree of the forest rooted at the given node, it shares the
+   *         arrays with this tree
+   */
+  public ArrayTree withRoot(int root)
+  {
+    if (root < 0 || root >= layerOffsets[1])
+      throw new IllegalArgumentException(root + " is not a root!");
+    return root == this.root ? this : new ArrayTree(this, root);
+  }
+
+  /**
+   * @return true iff the arrays contain other trees than this one
+   */
+  public boolean isForestView()
+  {
+    return layerOffsets[1] != 1;
+  }
+
+  /**
+   * @param tree
+   * @return a compact copy of the given tree, the order of the children is
+   *         preserved
+   */
+  public static <V, E> ArrayTree of(Tree<V, E> tree)
+  {
+    int maxLayer = tree.getMaxLayer();
+    Map<V, Integer> index = new HashMap<V, Integer>();
+    int[] layerOffsets = new int[maxLayer + 2];
+    int numNodes = 0;
+    for (int l = 0; l <= maxLayer; ++l)
+    {
+      Collection<V> layer = tree.getVerticesAtDistance(l);
+      layerOffsets[l] = numNodes;
+      for (V v : layer)
+        index.put(v, numNodes++);
+    }
+    layerOffsets[maxLayer + 1] = numNodes;
+
+    @SuppressWarnings("unchecked")
+    V[] nodes = (V[]) new Object[numNodes];
+    for (Map.Entry<V, Integer> entry : index.entrySet())
+      nodes[entry.getValue()] = entry.getKey();
+
+    int[] labels = new int[numNodes];
+    int[] childOffsets = new int[numNodes + 1];
+    int numChildren = 0;
+    for (int v = 0; v < numNodes; ++v)
+    {
+      labels[v] = SubtreeInterner.labelId(nodes[v].toString());
+      childOffsets[v] = numChildren;
+      numChildren += tree.getChildEdges(nodes[v]).size();
+    }
+    childOffsets[numNodes] = numChildren;
+
+    int[] children = new int[numChildren];
+    int[] childEdgeLabels = new int[numChildren];
+    int c = 0;
+    for (int v = 0; v < numNodes; ++v)
+      for (E edge : tree.getChildEdges(nodes[v]))
+      {
+        children[c] = index.get(tree.getGraph().getEdgeTarget(edge));
+        childEdgeLabels[c++] = SubtreeInterner.labelId(String.valueOf(edge));
+      }
+
+    return new ArrayTree(labels, childOffsets, children, childEdgeLabels,
+        layerOffsets);
+  }
+
+  /**
+   * @param trees
+   * @return compact copies of the given trees in the same order
+   */
+  public static List<ArrayTree> of(List<? extends Tree<?, ?>> trees)
+  {
+    List<ArrayTree> compact = new ArrayList<ArrayTree>(trees.size());
+    for (Tree<?, ?> tree : trees)
+      compact.add(of(tree));
+    return compact;
+  }
+
+  /**
+   * @param maxLayer
+   * @return the tree restricted to the layers 0 to maxLayer, as the nodes are
+   *         ordered by layer this is a prefix of the arrays
+   */
+  public ArrayTree truncate(int maxLayer)
+  {
+    if (maxLayer >= getMaxLayer()) return this;
+    return truncateArrays(maxLayer).withRoot(root);
+  }
+
+  private ArrayTree truncateArrays(int maxLayer)
+  {
+    int numNodes = layerOffsets[maxLayer + 1];
+    int lastLayerStart = layerOffsets[maxLayer];
+    int numChildren = childOffsets[lastLayerStart];
+
+    int[] truncatedOffsets = Arrays.copyOf(childOffsets, numNodes + 1);
+    // nodes of the last layer become leaves
+    Arrays.fill(truncatedOffsets, lastLayerStart, numNodes + 1, numChildren);
+    return new ArrayTree(Arrays.copyOf(labels, numNodes), truncatedOffsets,
+        Arrays.copyOf(children, numChildren),
+        Arrays.copyOf(childEdgeLabels, numChildren),
+        Arrays.copyOf(layerOffsets, maxLayer + 2), true);
+  }
+
+  /**
+   * @param trees
+   * @param maxLayer
+   * @return the trees restricted to the layers 0 to maxLayer, views of the
+   *         same forest stay views of one truncated forest
+   */
+  public static List<ArrayTree> truncate(List<ArrayTree> trees, int maxLayer)
+  {
+    Map<int[], ArrayTree> forests = new IdentityHashMap<int[], ArrayTree>();
+    List<ArrayTree> truncated = new ArrayList<ArrayTree>(trees.size());
+    for (ArrayTree tree : trees)
+    {
+      if (maxLayer >= tree.getMaxLayer())
+        truncated.add(tree);
+      else
+        truncated.add(forests
+            .computeIfAbsent(tree.labels, l -> tree.truncateArrays(maxLayer))
+            .withRoot(tree.root));
+    }
+    return truncated;
+  }
+
+  /**
+   * @return a copy of the tree without the nodes of the other trees of the
+   *         forest, empty layers at the end are dropped
+   */
+  private ArrayTree detach()
+  {
+    int numNodes = labels.length;
+    int[] index = new int[numNodes];
+    Arrays.fill(index, -1);
+    index[root] = 0;
+    int newNumNodes = 1, numChildren = 0, maxLayer = 0, layer = 0;
+    int[] newLayerOffsets = new int[layerOffsets.length];
+    newLayerOffsets[1] = 1;
+    // children always have larger indices, so the new numbering is also
+    // ordered by layer and all nodes of a layer are numbered before it starts
+    for (int v = root; v < numNodes; ++v)
+    {
+      while (v >= layerOffsets[layer + 1])
+        newLayerOffsets[++layer + 1] = newNumNodes;
+      if (index[v] == -1) continue;
+      maxLayer = layer;
+      numChildren += getNumberOfChildren(v);
+      for (int c = childOffsets[v]; c < childOffsets[v + 1]; ++c)
+        if (index[children[c]] == -1) index[children[c]] = newNumNodes++;
+    }
+
+    int[] newLabels = new int[newNumNodes];
+    int[] newChildOffsets = new int[newNumNodes + 1];
+    int[] newChildren = new int[numChildren];
+    int[] newChildEdgeLabels = new int[numChildren];
+    int[] nodes = new int[newNumNodes];
+    for (int v = root; v < numNodes; ++v)
+      if (index[v] != -1) nodes[index[v]] = v;
+    int c = 0;
+    for (int node = 0; node < newNumNodes; ++node)
+    {
+      int v = nodes[node];
+      newLabels[node] = labels[v];
+      newChildOffsets[node] = c;
+      for (int p = childOffsets[v]; p < childOffsets[v + 1]; ++p)
+      {
+        newChildren[c] = index[children[p]];
+        newChildEdgeLabels[c++] = childEdgeLabels[p];
+      }
+    }
+    newChildOffsets[newNumNodes] = c;
+    return new ArrayTree(newLabels, newChildOffsets, newChildren,
+        newChildEdgeLabels, Arrays.copyOf(newLayerOffsets, maxLayer + 2));
+  }
+
+  /**
+   * Writes the arrays of the tree, the label ids are written as they are, so
+   * the caller has to store the labels belonging to them, see
+   * {@link SubtreeInterner#label(int)}. Of a view of a forest only the nodes
+   * of the tree itself are written.
+   *
+   * @param out
+   * @throws IOException
+   */
+  public void write(DataOutput out) throws IOException
+  {
+    if (isForestView())
+    {
+      detach().write(out);
+      return;
+    }
+    writeArray(out, labels);
+    writeArray(out, childOffsets);
+    writeArray(out, children);
+    writeArray(out, childEdgeLabels);
+    writeArray(out, layerOffsets);
+  }
+
+  /**
+   * @param in
+   * @param labelIds
+   *          maps the label ids written by {@link #write(DataOutput)} to the
+   *          label ids of this process
+   * @return the tree read from in, its subtree ids are interned again
+   * @throws IOException
+   */
+  public static ArrayTree read(DataInput in, int[] labelIds) throws IOException
+  {
+    int[] labels = readArray(in);
+    int[] childOffsets = readArray(in);
+    int[] children = readArray(in);
+    int[] childEdgeLabels = readArray(in);
+    int[] layerOffsets = readArray(in);
+    for (int v = 0; v < labels.length; ++v)
+      labels[v] = labelIds[labels[v]];
+    for (int c = 0; c < childEdgeLabels.length; ++c)
+      childEdgeLabels[c] = labelIds[childEdgeLabels[c]];
+    return new ArrayTree(labels, childOffsets, children, childEdgeLabels,
+        layerOffsets);
+  }
+
+  private static void writeArray(DataOutput out, int[] array)
+      throws IOException
+  {
+    out.writeInt(array.length);
+    for (int value : array)
+      out.writeInt(value);
+  }
+
+  private static int[] readArray(DataInput in) throws IOException
+  {
+    int[] array = new int[in.readInt()];
+    for (int i = 0; i < array.length; ++i)
+      array[i] = in.readInt();
+    return array;
+  }
+
+  @Override
+  public int getRoot()
+  {
+    return root;
+  }
+
+  /**
+   * @return number of nodes of the arrays, for a view of a forest including
+   *         the nodes of the other trees
+   */
+  public int getNumberOfNodes()
+  {
+    return labels.length;
+  }
+
+  public int getMaxLayer()
+  {
+    return layerOffsets.length - 2;
+  }
+
+  /**
+   * @param layer
+   * @return index of the first node of the layer
+   */
+  public int getLayerStart(int layer)
+  {
+    return layerOffsets[layer];
+  }
+
+  /**
+   * @param layer
+   * @return index after the last node of the layer
+   */
+  public int getLayerEnd(int layer)
+  {
+    return layerOffsets[layer + 1];
+  }
+
+  /**
+   * @return for every layer the number of nodes of the unfolded tree, i.e. the
+   *         number of paths from the root to the nodes of the layer
+   */
+  @Override
+  public double[] getUnfoldedLayerSizes()
+  {
+    if (unfoldedLayerSizes != null) return unfoldedLayerSizes;
+    double[] paths = new double[labels.length];
+    paths[root] = 1;
+    for (int v = root; v < labels.length; ++v)
+      for (int c = childOffsets[v]; c < childOffsets[v + 1]; ++c)
+        paths[children[c]] += paths[v];
+
+    double[] sizes = new double[layerOffsets.length - 1];
+    for (int l = 0; l < sizes.length; ++l)
+      for (int v = layerOffsets[l]; v < layerOffsets[l + 1]; ++v)
+        sizes[l] += paths[v];
+    // a race only computes the same array twice
+    unfoldedLayerSizes = sizes;
+    return sizes;
+  }
+
+  @Override
+  public int getLabel(int node)
+  {
+    return labels[node];
+  }
+
+  @Override
+  public int getSubtreeId(int node)
+  {
+    return subtreeIds[node];
+  }
+
+  /**
+   * @param node
+   * @return first child position of the node, see {@link #getChild(int)}
+   */
+  @Override
+  public int getChildStart(int node)
+  {
+    return childOffsets[node];
+  }
+
+  /**
+   * @param node
+   * @return position after the last child of the node
+   */
+  @Override
+  public int getChildEnd(int node)
+  {
+    return childOffsets[node + 1];
+  }
+
+  @Override
+  public int getNumberOfChildren(int node)
+  {
+    return childOffsets[node + 1] - childOffsets[node];
+  }
+
+  /**
+   * @param position
+   *          child position between getChildStart(v) and getChildEnd(v) - 1
+   * @return the node index of the child
+   */
+  @Override
+  public int getChild(int position)
+  {
+    return children[position];
+  }
+
+  /**
+   * @param position
+   *          child position between getChildStart(v) and getChildEnd(v) - 1
+   * @return the label id of the edge to the child
+   */
+  @Override
+  public int getChildEdgeLabel(int position)
+  {
+    return childEdgeLabels[position];
+  }
+}
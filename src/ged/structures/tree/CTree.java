@@ -2,6 +2,7 @@ package ged.structures.tree;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -75,6 +76,8 @@ public class CTree<V, E> extends Tree<V, E>
         graph.addEdge(parents.get(i), vertex, edges.get(i));
 
     store(vertex, parentLayer + 1);
+    for (V parent : parents)
+      invalidateCache(parent);
   }
 
   public void addNode(V vertex, V[] parents, E[] edges)
@@ -107,6 +110,8 @@ public class CTree<V, E> extends Tree<V, E>
         graph.addEdge(parents[i], vertex, edges[i]);
 
     store(vertex, parentLayer + 1);
+    for (V parent : parents)
+      invalidateCache(parent);
   }
 
   public List<V> getParents(V child)
@@ -130,6 +135,7 @@ public class CTree<V, E> extends Tree<V, E>
       graph.addEdge(parent, child);
     else
       graph.addEdge(parent, child, edge);
+    invalidateCache(parent);
   }
 
   @Override
@@ -195,6 +201,75 @@ public class CTree<V, E> extends Tree<V, E>
     return encoding.toString();
   }
 
+  /**
+   * Compact counterpart of {@link #computeLexicographicEncoding()}. The
+   * subtrees are interned bottom-up with {@link SubtreeInterner} and every layer
+   * is represented by the id of its set of distinct subtrees, so two trees have
+   * the same canonical encoding iff they have the same lexicographic encoding.
+   * The ids are only comparable within the same JVM.
+   *
+   * @return the layer ids, starting with the root layer
+   */
+  public int[] computeCanonicalEncoding()
+  {
+    Map<V, Integer> subtreeIds = new HashMap<V, Integer>();
+    int[] encoding = new int[maxLayer + 1];
+
+    for (int i = maxLayer; i >= 0; --i)
+    {
+      Set<Long> layer = new HashSet<Long>();
+      for (V vertex : getVerticesAtDistance(i))
+      {
+        Set<E> childEdges = getChildEdges(vertex);
+        long[] children = new long[childEdges.size()];
+        int c = 0;
+        for (E childEdge : childEdges)
+          children[c++] = SubtreeInterner.child(
+              SubtreeInterner.labelId(String.valueOf(childEdge)),
+              subtreeIds.get(graph.getEdgeTarget(childEdge)));
+        int id = SubtreeInterner
+            .subtreeId(SubtreeInterner.labelId(vertex.toString()), children);
+        subtreeIds.put(vertex, id);
+        layer.add((long) id);
+      }
+      long[] layerSubtrees = new long[layer.size()];
+      int t = 0;
+      for (long id : layer)
+        layerSubtrees[t++] = id;
+      encoding[i] = SubtreeInterner.layerId(layerSubtrees);
+    }
+    return encoding;
+  }
+
+  /**
+   * @param trees
+   * @return the canonical encodings of the trees sorted and concatenated, every
+   *         encoding is preceded by its length
+   */
+  public static int[] computeCanonicalEncoding(
+      Collection<? extends CTree<?, ?>> trees)
+  {
+    List<int[]> treeEncodings = new ArrayList<int[]>(trees.size());
+    int length = 0;
+    for (CTree<?, ?> tree : trees)
+    {
+      int[] treeEncoding = tree.computeCanonicalEncoding();
+      treeEncodings.add(treeEncoding);
+      length += treeEncoding.length + 1;
+    }
+    treeEncodings.sort(Arrays::compare);
+
+    int[] encoding = new int[length];
+    int p = 0;
+    for (int[] treeEncoding : treeEncodings)
+    {
+      encoding[p++] = treeEncoding.length;
+      System.arraycopy(treeEncoding, 0, encoding, p, treeEncoding.length);
+      p += treeEncoding.length;
+    }
+    return encoding;
+  }
+
   private CTree<V, E> subTreeAt(V vertex)
   {
     CTree<V, E> subTree = new CTree<V, E>(
@@ -73,6 +73,8 @@ public class CTreePlus<V, E> extends Tree<V, E>
       graph.addEdge(parents[i], vertex, edges != null ? edges[i] : null);
 
     store(vertex, vertexToRootDistance.get(parents[0]) + 1);
+    for (V parent : parents)
+      invalidateCache(parent);
   }
 
   public List<V> getParents(V child)
@@ -101,6 +103,7 @@ public class CTreePlus<V, E> extends Tree<V, E>
       graph.addEdge(parent, child);
     else
       graph.addEdge(parent, child, edge);
+    invalidateCache(parent);
   }
 
   @Override
@@ -0,0 +1,52 @@
+package ged.structures.tree;
+
+/**
+ * Read-only int based tree as used by the SDTED on compact trees, see
+ * {@link ArrayTree}. Nodes are ints, vertex and edge labels are ids of
+ * {@link SubtreeInterner} and every node knows the interned id of the subtree
+ * rooted at it. The children of node v are stored at the positions
+ * getChildStart(v) to getChildEnd(v) - 1. Trees that compute their children on
+ * demand may leave gaps, i.e. positions in this range that hold no child.
+ */
+public interface CompactTree
+{
+  int getRoot();
+
+  int getLabel(int node);
+
+  int getSubtreeId(int node);
+
+  int getNumberOfChildren(int node);
+
+  /**
+   * @param node
+   * @return first child position of the node, see {@link #getChild(int)}
+   */
+  int getChildStart(int node);
+
+  /**
+   * @param node
+   * @return position after the last child of the node
+   */
+  int getChildEnd(int node);
+
+  /**
+   * @param position
+   *          child position between getChildStart(v) and getChildEnd(v) - 1
+   * @return the node index of the child, -1 if the position is a gap
+   */
+  int getChild(int position);
+
+  /**
+   * @param position
+   *          child position between getChildStart(v) and getChildEnd(v) - 1
+   * @return the label id of the edge to the child
+   */
+  int getChildEdgeLabel(int position);
+
+  /**
+   * @return for every layer the number of nodes of the unfolded tree, i.e. the
+   *         number of paths from the root to the nodes of the layer
+   */
+  double[] getUnfoldedLayerSizes();
+}
@@ -0,0 +1,180 @@
+package ged.structures.tree;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ged.structures.graph.IndexedGraph;
+
+/**
+ * Global interning table for subtrees. Every distinct vertex label and every
+ * distinct combination of a label id and a multiset of (edge label id, child
+ * subtree id) pairs gets a unique int id. Two subtrees therefore have the same
+ * id iff their lexicographic encodings are the same, but comparing and hashing
+ * the ids is O(1).
+ */
+public final class SubtreeInterner
+{
+  /**
+   * id of the empty (null) subtree, it is never assigned to an actual subtree
+   */
+  public static final int NULL_ID = 0;
+
+  private static final class Key
+  {
+    private final int labelId;
+    private final long[] children;
+    private final int hash;
+
+    public Key(int labelId, long[] children)
+    {
+      this.labelId = labelId;
+      this.children = children;
+      this.hash = 31 * labelId + Arrays.hashCode(children);
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+      // no instanceof check for performance it is not needed anyway as the
+      // class is private
+      Key key = (Key) other;
+      return labelId == key.labelId && Arrays.equals(children, key.children);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return hash;
+    }
+  }
+
+  private static final ConcurrentHashMap<String, Integer> labelIds = new ConcurrentHashMap<String, Integer>();
+  private static final ConcurrentHashMap<Integer, String> labels = new ConcurrentHashMap<Integer, String>();
+  private static final ConcurrentHashMap<Key, Integer> subtreeIds = new ConcurrentHashMap<Key, Integer>();
+  private static final ConcurrentHashMap<Key, Integer> layerIds = new ConcurrentHashMap<Key, Integer>();
+  private static final AtomicInteger nextLabelId = new AtomicInteger();
+  private static final AtomicInteger nextSubtreeId = new AtomicInteger(
+      NULL_ID + 1);
+  private static final AtomicInteger nextLayerId = new AtomicInteger();
+
+  private SubtreeInterner()
+  {}
+
+  /**
+   * @param label
+   * @return the id of the given vertex or edge label
+   */
+  public static int labelId(String label)
+  {
+    Integer id = labelIds.get(label);
+    if (id != null) return id;
+    return labelIds.computeIfAbsent(label, l ->
+    {
+      int newId = nextLabelId.getAndIncrement();
+      labels.put(newId, l);
+      return newId;
+    });
+  }
+
+  /**
+   * @param graph
+   * @return the label id of every vertex, in the order of the indices
+   */
+  public static int[] vertexLabelIds(IndexedGraph<?, ?> graph)
+  {
+    int[] ids = new int[graph.getNumberOfVertices()];
+    for (int v = 0; v < ids.length; ++v)
+      ids[v] = labelId(graph.getVertex(v).toString());
+    return ids;
+  }
+
+  /**
+   * @param graph
+   * @return the label id of the edge at every neighbor position, see
+   *         {@link IndexedGraph#getEdge(int)}
+   */
+  public static int[] edgeLabelIds(IndexedGraph<?, ?> graph)
+  {
+    int n = graph.getNumberOfVertices();
+    int[] ids = new int[n == 0 ? 0 : graph.getNeighborEnd(n - 1)];
+    for (int p = 0; p < ids.length; ++p)
+      ids[p] = labelId(String.valueOf(graph.getEdge(p)));
+    return ids;
+  }
+
+  /**
+   * @param labelId
+   * @return the label with the given id, null if there is none
+   */
+  public static String label(int labelId)
+  {
+    return labels.get(labelId);
+  }
+
+  /**
+   * @param labelId
+   *          id of the label of the subtree root
+   * @param children
+   *          children packed with {@link #child(int, int)}, the array is sorted
+   *          in place and must not be modified afterwards
+   * @return the id of the subtree
+   */
+  public static int subtreeId(int labelId, long[] children)
+  {
+    Arrays.sort(children);
+    Key key = new Key(labelId, children);
+    Integer id = subtreeIds.get(key);
+    if (id != null) return id;
+    return subtreeIds.computeIfAbsent(key,
+        k -> nextSubtreeId.getAndIncrement());
+  }
+
+  /**
+   * @param subtreeIds
+   *          ids of the distinct subtrees of a tree layer, the array is sorted
+   *          in place and must not be modified afterwards
+   * @return the id of the set of subtrees, layer ids are independent of the
+   *         subtree ids
+   */
+  public static int layerId(long[] subtreeIds)
+  {
+    Arrays.sort(subtreeIds);
+    Key key = new Key(0, subtreeIds);
+    Integer id = layerIds.get(key);
+    if (id != null) return id;
+    return layerIds.computeIfAbsent(key, k -> nextLayerId.getAndIncrement());
+  }
+
+  /**
+   * @param edgeLabelId
+   * @param subtreeId
+   * @return packs the label of the edge to a child and the id of the child
+   *         subtree into a single long
+   */
+  public static long child(int edgeLabelId, int subtreeId)
+  {
+    return ((long) edgeLabelId << 32) | (subtreeId & 0xFFFFFFFFL);
+  }
+
+  /**
+   * @param id1
+   * @param id2
+   * @return packs two subtree ids into a single long, the result is symmetric
+   *         in its arguments
+   */
+  public static long pair(int id1, int id2)
+  {
+    return id1 < id2//
+        ? ((long) id1 << 32) | (id2 & 0xFFFFFFFFL)
+        : ((long) id2 << 32) | (id1 & 0xFFFFFFFFL);
+  }
+
+  /**
+   * @return the number of distinct subtrees interned so far
+   */
+  public static int size()
+  {
+    return subtreeIds.size();
+  }
+}
@@ -9,6 +9,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jgrapht.graph.AbstractBaseGraph;
 
@@ -17,7 +18,10 @@ public class Tree<V, E>
   protected final Map<V, Integer> vertexToRootDistance = new HashMap<V, Integer>();
   protected final Map<Integer, Collection<V>> rootDistanceToVertices = new HashMap<Integer, Collection<V>>();
   protected int maxLayer = -1;
-  private final Map<V, String> encodingCache = new HashMap<>();
+  // concurrent maps so finished trees can be shared between threads, racing
+  // threads compute the same values so the cache entries are idempotent
+  private final Map<V, String> encodingCache = new ConcurrentHashMap<>();
+  private final Map<V, Integer> subtreeIdCache = new ConcurrentHashMap<>();
   protected final AbstractBaseGraph<V, E> graph;
   protected V root;
 
@@ -78,6 +82,7 @@ public class Tree<V, E>
         graph.addEdge(parent, vertex, edge);
 
       store(vertex, vertexToRootDistance.get(parent) + 1);
+      invalidateCache(parent);
     }
   }
 
@@ -216,8 +221,56 @@ public class Tree<V, E>
     return encodingString;
   }
 
+  public int computeSubtreeIdCached()
+  {
+    return computeSubtreeIdCached(root);
+  }
+
+  /**
+   * @param vertex
+   * @return the id of the subtree rooted at vertex, see {@link SubtreeInterner}.
+   *         Two subtrees have the same id iff they have the same lexicographic
+   *         encoding.
+   */
+  public int computeSubtreeIdCached(V vertex)
+  {
+    Integer cachedValue = subtreeIdCache.get(vertex);
+    if (cachedValue != null) return cachedValue;
+
+    Set<E> childrenEdges = getChildEdges(vertex);
+    long[] children = new long[childrenEdges.size()];
+    int i = 0;
+    for (E childEdge : childrenEdges)
+      children[i++] = SubtreeInterner.child(
+          SubtreeInterner.labelId(String.valueOf(childEdge)),
+          computeSubtreeIdCached(graph.getEdgeTarget(childEdge)));
+
+    int id = SubtreeInterner
+        .subtreeId(SubtreeInterner.labelId(vertex.toString()), children);
+    subtreeIdCache.put(vertex, id);
+    return id;
+  }
+
+  /**
+   * Removes the cached encodings and subtree ids of the vertex and its
+   * ancestors, it has to be called when the subtree of the vertex changes.
+   * Computing a cached value caches the values of all descendants, so the
+   * ancestors of a vertex without cached values have none either.
+   *
+   * @param vertex
+   */
+  protected void invalidateCache(V vertex)
+  {
+    boolean cached = encodingCache.remove(vertex) != null;
+    cached |= subtreeIdCache.remove(vertex) != null;
+    if (!cached) return;
+    for (E edge : graph.incomingEdgesOf(vertex))
+      invalidateCache(graph.getEdgeSource(edge));
+  }
+
   public void clearCache()
   {
     encodingCache.clear();
+    subtreeIdCache.clear();
   }
 }